@@ -0,0 +1,67 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EngineBenchmark Class: Cost of the game rules on empty, mid-game and near-full boards, standard 6x9 and 20x20
+ *      foundWinner() / boardFull()  -> what every caller pays to ask about a game
+ *      isWin()                      -> win check run once per move ('Board'... shift-and-mask on 6x9, line table on 20x20)
+ *      play()                       -> whole move (drop disc, check win, build next snapshot)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"EMPTY", "MID_GAME", "NEAR_FULL"})
+    public String board;
+
+    @Param({"6x9", "20x20"})
+    public String shape;
+
+    private Game game;
+    private GameState state;
+    private long[] lastMover;  // discs of player who made last move
+    private int lastSquare;
+    private int nextColumn;
+
+    @Setup
+    public void setUp() {
+        Board geometry = shape.equals("6x9") ? Board.STANDARD : Board.of(20, 20, 5);
+        int moves = Positions.moves(geometry, board);
+        game = Positions.game(geometry, moves);
+        state = Positions.state(geometry, moves);
+        lastMover = state.turn == 1 ? state.firstDiscs : state.secondDiscs;
+        lastSquare = Math.max(state.lastSquare, 0);
+
+        // first column with room left, so 'play()' measures a real move rather than a rejection
+        while (state.play(nextColumn) == null) {
+            nextColumn++;
+        }
+    }
+
+    @Benchmark
+    public boolean foundWinner() {
+        return game.foundWinner();
+    }
+
+    @Benchmark
+    public boolean boardFull() {
+        return game.boardFull();
+    }
+
+    @Benchmark
+    public boolean isWin() {
+        return state.board.isWin(lastMover, lastSquare);
+    }
+
+    @Benchmark
+    public GameState play() {
+        return state.play(nextColumn);
+    }
+}
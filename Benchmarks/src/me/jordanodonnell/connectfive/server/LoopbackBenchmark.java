@@ -0,0 +1,190 @@
+package me.jordanodonnell.connectfive.server;
+
+import me.jordanodonnell.connectfive.server.client.ServerConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoopbackBenchmark Class: End-to-end moves through a real server over loopback sockets
+ * Every benchmark thread plays its own match (two client connections) so '-t 64' means 64 concurrent matches
+ * One operation = one move, from 'MOVE' sent to 'VALID_MOVE' and 'OPPONENT_MOVED' both received
+ *      Throughput  -> moves per second
+ *      SampleTime  -> move latency distribution (p99 reported as 'p0.99')
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoopbackBenchmark {
+
+    /**
+     * ServerUnderTest Class: Server started in-process (once per fork) on its own port
+     */
+    @State(Scope.Benchmark)
+    public static class ServerUnderTest {
+
+        @Param({"classic", "nio", "nio-batch"})
+        public String mode;
+
+        @Param({"TEXT", "BINARY"})
+        public String format;
+
+        @Param({"5999"})
+        public int port;
+
+        @Setup(Level.Trial)
+        public void start() throws InterruptedException {
+            String[] options = mode.equals("classic") ? new String[0]
+                    : mode.equals("nio") ? new String[]{"--nio"} : new String[]{"--nio", "--batch-flush"};
+
+            Thread server = new Thread(() -> {
+                try {
+                    Server.run(port, Arrays.asList(options));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "server-under-test");
+            server.setDaemon(true);
+            server.start();
+
+            // wait for server to start listening
+            while (true) {
+                try (Socket probe = new Socket("localhost", port)) {
+                    return;
+                } catch (IOException notYet) {
+                    Thread.sleep(50);
+                }
+            }
+        }
+    }
+
+    /**
+     * Match Class: One thread's match... both players' connections plus a copy of the board to choose moves from
+     */
+    @State(Scope.Thread)
+    public static class Match {
+        ServerConnection mover;
+        ServerConnection waiting;
+        GameState board;
+        int moves;
+
+        @Setup(Level.Trial)
+        public void connect(ServerUnderTest server) throws IOException {
+            newMatch(server);
+        }
+
+        /**
+         * Starting a new match once the last one has finished (kept out of the measured move)
+         */
+        @Setup(Level.Invocation)
+        public void nextMatchIfOver(ServerUnderTest server) throws IOException {
+            if (board.isOver()) {
+                close();
+                newMatch(server);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            mover.close();
+            waiting.close();
+        }
+
+        /**
+         * Connecting two players... one match at a time across all threads so matchmaker pairs them with each other
+         */
+        private void newMatch(ServerUnderTest server) throws IOException {
+            boolean binary = server.format.equals("BINARY");
+
+            synchronized (Match.class) {
+                mover = new ServerConnection("localhost", server.port);
+                mover.handshake("bench-1", binary);
+                awaitMessage(mover, "Waiting for Opponent!");
+
+                waiting = new ServerConnection("localhost", server.port);
+                waiting.handshake("bench-2", binary);
+                awaitMessage(mover, "All Players Connected!");
+                awaitMessage(waiting, "All Players Connected!");
+            }
+            board = GameState.start(Board.STANDARD);
+            moves = 0;
+        }
+
+        /**
+         * Returns next column to play... scripted (long game) then first column with room
+         */
+        int nextColumn() {
+            int column = moves < Positions.NEAR_FULL ? Positions.column(moves) : 0;
+            while (board.play(column) == null) {
+                column++;
+            }
+            return column;
+        }
+    }
+
+    @Benchmark
+    public int move(Match match) throws IOException {
+        int column = match.nextColumn();
+        match.mover.sendMove(column);
+
+        // first move of a match... players may have been paired the other way round
+        if (!awaitValidMove(match.mover)) {
+            ServerConnection first = match.waiting;
+            match.waiting = match.mover;
+            match.mover = first;
+            match.mover.sendMove(column);
+            if (!awaitValidMove(match.mover)) {
+                throw new IllegalStateException("Move rejected for both players");
+            }
+        }
+        await(match.waiting, ServerConnection.OPPONENT_MOVED);
+
+        match.board = match.board.play(column).markPublished();
+        match.moves++;
+        ServerConnection next = match.waiting;
+        match.waiting = match.mover;
+        match.mover = next;
+        return column;
+    }
+
+    /**
+     * Returns true once 'VALID_MOVE' arrives or false if move was turned away
+     */
+    private static boolean awaitValidMove(ServerConnection connection) throws IOException {
+        while (true) {
+            int type = read(connection);
+            if (type == ServerConnection.VALID_MOVE) {
+                return true;
+            }
+            if (type == ServerConnection.MESSAGE && connection.text().equals("Not Possible Move!")) {
+                return false;
+            }
+        }
+    }
+
+    private static void await(ServerConnection connection, int expected) throws IOException {
+        while (read(connection) != expected) {
+            // skip messages in between e.g. 'Your Turn!'
+        }
+    }
+
+    private static void awaitMessage(ServerConnection connection, String text) throws IOException {
+        while (read(connection) != ServerConnection.MESSAGE || !connection.text().equals(text)) {
+            // skip messages in between e.g. 'WELCOME'
+        }
+    }
+
+    private static int read(ServerConnection connection) throws IOException {
+        int type = connection.read();
+        if (type == -1) {
+            throw new IOException("Server closed connection");
+        }
+        return type;
+    }
+}
@@ -0,0 +1,76 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MoveBenchmark Class: Cost of 'possibleMove()'
+ *      duel      -> both players of one game hammering it from several threads at once (most moves are out of turn
+ *                   and turned away, the rest race on the compare-and-set)
+ *      fullGame  -> one thread playing a whole scripted game (52 moves, including publishing each move)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    /**
+     * Duel Class: One game and its two players... replaced with a fresh one once the game is over
+     */
+    static final class Duel {
+        final Game game = new Game();
+        final Game.Player blue = game.new Player(new NullConnection(), "blue", "BLUE");
+        final Game.Player red = game.new Player(new NullConnection(), "red", "RED");
+
+        Duel() {
+            blue.setOpponent(red);
+            red.setOpponent(blue);
+            game.firstPlayer = blue;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class SharedGame {
+        final AtomicReference<Duel> duel = new AtomicReference<>(new Duel());
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int column;
+    }
+
+    @Benchmark
+    @Group("duel")
+    @GroupThreads(2)
+    public int blue(SharedGame shared, Cursor cursor) {
+        Duel duel = shared.duel.get();
+        return move(shared, duel, duel.blue, cursor);
+    }
+
+    @Benchmark
+    @Group("duel")
+    @GroupThreads(2)
+    public int red(SharedGame shared, Cursor cursor) {
+        Duel duel = shared.duel.get();
+        return move(shared, duel, duel.red, cursor);
+    }
+
+    private static int move(SharedGame shared, Duel duel, Game.Player player, Cursor cursor) {
+        cursor.column = (cursor.column + 1) % Bitboard.COLUMNS;
+        int square = duel.game.possibleMove(cursor.column, player);
+
+        if (square != -1 && duel.game.state().isOver()) {
+            shared.duel.compareAndSet(duel, new Duel());  // game over... next game
+        }
+        return square;
+    }
+
+    @Benchmark
+    public Game fullGame() {
+        return Positions.game(Positions.NEAR_FULL);
+    }
+}
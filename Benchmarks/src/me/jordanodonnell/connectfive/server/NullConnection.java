@@ -0,0 +1,42 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * NullConnection Class: Connection that throws every message away
+ * Lets benchmarks drive a real 'Game' (including publishing moves) without sockets
+ */
+class NullConnection implements Connection {
+
+    @Override
+    public void send(int type, int square) {
+    }
+
+    @Override
+    public void send(int type, String text) {
+    }
+
+    @Override
+    public void send(Protocol.Frame frame) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void open(Game.Player player) {
+    }
+
+    @Override
+    public int pendingBytes() {
+        return 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
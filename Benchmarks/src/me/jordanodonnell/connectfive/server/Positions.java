@@ -0,0 +1,104 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.Random;
+
+/**
+ * Positions Class: Scripted games used to set up boards for benchmarks
+ * Standard board uses the fixed script below... other shapes get a seeded script of moves that never end the game
+ */
+final class Positions {
+
+    /**
+     * Columns played in turn (player 1 first)... 52 discs without anyone making 5 in a row
+     */
+    static final String NO_WINNER = "7264111506363714600072078567356072358344138148845522";
+
+    static final int MID_GAME = NO_WINNER.length() / 2;  // 26 discs
+    static final int NEAR_FULL = NO_WINNER.length();  // 52 discs
+
+    private Positions() {
+    }
+
+    /**
+     * Returns a new game (with players that discard their messages) after the first 'moves' scripted moves
+     */
+    static Game game(int moves) {
+        return game(Board.STANDARD, moves);
+    }
+
+    static Game game(Board board, int moves) {
+        int[] columns = script(board);
+        Game game = new Game(board, null);
+        Game.Player player1 = game.new Player(new NullConnection(), "player1", "BLUE");
+        Game.Player player2 = game.new Player(new NullConnection(), "player2", "RED");
+        player1.setOpponent(player2);
+        player2.setOpponent(player1);
+        game.firstPlayer = player1;
+
+        for (int i = 0; i < moves; i++) {
+            Game.Player mover = i % 2 == 0 ? player1 : player2;
+            if (game.possibleMove(columns[i], mover) == -1) {
+                throw new IllegalStateException("Scripted move " + i + " not possible");
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Returns snapshot after the first 'moves' scripted moves
+     */
+    static GameState state(int moves) {
+        return state(Board.STANDARD, moves);
+    }
+
+    static GameState state(Board board, int moves) {
+        int[] columns = script(board);
+        GameState state = GameState.start(board);
+        for (int i = 0; i < moves; i++) {
+            state = state.play(columns[i]).markPublished();
+        }
+        return state;
+    }
+
+    /**
+     * Returns number of scripted moves for 'EMPTY', 'MID_GAME' or 'NEAR_FULL' on given board
+     */
+    static int moves(Board board, String stage) {
+        int length = script(board).length;
+        return stage.equals("EMPTY") ? 0 : stage.equals("MID_GAME") ? length / 2 : length;
+    }
+
+    /**
+     * Returns columns played in turn on given board without anyone winning (stops early if every move would end the game)
+     */
+    static int[] script(Board board) {
+        if (board == Board.STANDARD) {
+            return NO_WINNER.chars().map(column -> column - '0').toArray();
+        }
+
+        Random random = new Random(board.squares);
+        int[] columns = new int[board.squares - 2];
+        GameState state = GameState.start(board);
+        int played = 0;
+        while (played < columns.length) {
+            int start = random.nextInt(board.columns);
+            int column = -1;
+            for (int i = 0; i < board.columns && column == -1; i++) {
+                GameState next = state.play((start + i) % board.columns);
+                if (next != null && !next.isOver()) {
+                    column = (start + i) % board.columns;
+                    state = next.markPublished();
+                }
+            }
+            if (column == -1) {
+                break;
+            }
+            columns[played++] = column;
+        }
+        return java.util.Arrays.copyOf(columns, played);
+    }
+
+    static int column(int move) {
+        return NO_WINNER.charAt(move) - '0';
+    }
+}
@@ -0,0 +1,61 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProtocolBenchmark Class: Encoding 'VALID_MOVE' / 'OPPONENT_MOVED' and decoding 'MOVE'
+ * 'legacy' benchmarks build and parse Strings the way the original server did, for comparison
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    @Param({"TEXT", "BINARY"})
+    public String format;
+
+    private Protocol.Codec codec;
+    private int square;
+
+    private final byte[] textMove = "MOVE 40".getBytes(StandardCharsets.US_ASCII);
+    private final String legacyMove = "MOVE 40";
+
+    @Setup
+    public void setUp() {
+        codec = format.equals("TEXT") ? Protocol.TEXT : Protocol.BINARY;
+    }
+
+    @Benchmark
+    public byte[] encodeValidMove() {
+        square = (square + 1) % Bitboard.SQUARES;
+        return codec.encode(Protocol.VALID_MOVE, square);
+    }
+
+    @Benchmark
+    public byte[] encodeOpponentMoved() {
+        square = (square + 1) % Bitboard.SQUARES;
+        return codec.encode(Protocol.OPPONENT_MOVED, square);
+    }
+
+    @Benchmark
+    public int decodeTextMove() {
+        return Protocol.parseCommand(textMove, 0, textMove.length);
+    }
+
+    @Benchmark
+    public byte[] legacyEncodeOpponentMoved() {
+        square = (square + 1) % Bitboard.SQUARES;
+        return ("OPPONENT_MOVED " + square + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int legacyDecodeMove() {
+        return legacyMove.startsWith("MOVE") ? Integer.parseInt(legacyMove.substring(5)) : -1;
+    }
+}
@@ -4,60 +4,80 @@ import java.awt.Color;
 import java.awt.GridLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.*;
-import java.net.Socket;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Scanner;
 import javax.swing.Icon;
-import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  * Client Class: Creates connection between client and server and creates GUI to portray current game state
  */
-public class Client {
+public class Client implements GameListener {
 
     private JFrame frame = new JFrame("Connect Five Game");  // creating a GUI (JFrame = container that inherits java)
     private JLabel messageLabel = new JLabel("");  // creating message label to print messages to GUI
-    private ImageIcon icon;  // stores player 1's disc icon (image)
-    private ImageIcon opponentIcon;  // stores player 2's disc icon (image)
+    private Icon icon = DiscIcons.BLUE;  // stores player 1's disc icon (image... decoded and scaled once, see 'DiscIcons')
+    private Icon opponentIcon = DiscIcons.RED;  // stores player 2's disc icon (image)
 
-    private Square[] board = new Square[54];  // creating board of 54 'Square' objects (to store coloured discs)
-    private Square currentSquare;  // creating Square object (used to check and insert disc)
+    private Square[] board;  // 'Square' objects (to store coloured discs)... 54 on the standard 6x9 board
+    private JPanel boardPanel;  // grid of squares (replaced if server sends a different board shape)
+    private volatile RenderBatcher renderer;  // passes board/message changes from network thread to Swing once per frame
 
-    private static int PORT = 4999;  // current port used for connection between server and client(s)
-    private Socket socket;  // creating socket instance to bridge connection between current client object and server
-    private BufferedReader in;  // used to read in messages from server
-    private PrintWriter out;  // uses to transmit messages to server
+    private static final int PORT = 4999;  // default port used for connection between server (or gateway) and client(s)
+    private static final int FRAME_WIDTH = 480;  // GUI size for the standard 6x9 board
+    private static final int FRAME_HEIGHT = 320;
+    private static final int SQUARE_WIDTH = 53;  // room per square on bigger boards (disc icons are 40x40)
+    private static final int SQUARE_HEIGHT = 50;
+    private ServerConnection connection;  // bridges connection between current client object and server (reads/transmits messages)
+    private boolean spectating;  // watching someone else's game (server's messages say whose turn it is and who won)
 
     /**
      * Initialising Client object's attributes
+     * 'spectate' -> null to play, otherwise id of game to watch ("" for newest game in progress)
+     * 'boardRequest' -> "" for server's board, otherwise e.g. 'BOARD 20 20 5 ' to ask for that shape
      */
-    public Client(String serverAddress) throws Exception {
-        socket = new Socket("localhost", PORT);  // creating socket connection to server on port 4999
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));  // used to read in messages from server
-        out = new PrintWriter(socket.getOutputStream(), true);  // uses to transmit messages to server... flushes(deletes) previously transmitted messages
+    public Client(String serverAddress, int port, String spectate, String boardRequest) throws Exception {
+        connection = new ServerConnection(serverAddress, port);  // creating socket connection to server (or gateway)
         System.out.println("\nConnected to Server!");
 
-        Scanner scan = new Scanner(System.in);  // used to retrieve user input
         String name = null;  // creating local variable 'name' to store current player name
-        System.out.print("\nPlayer Name: ");  // requesting player to enter their name
-        name = scan.nextLine();  // storing user input in variable
+        if (spectate != null) {
+            spectating = true;
+            name = ("SPECTATE " + spectate).trim();  // server sends the board and every move instead of pairing us
+            frame.setTitle("Connect Five (Genesys) - Spectating");
+        } else {
+            Scanner scan = new Scanner(System.in);  // used to retrieve user input
+            System.out.print("\nPlayer Name: ");  // requesting player to enter their name
+            name = scan.nextLine();  // storing user input in variable
+        }
 
         // if user input is a valid string i.e. name then...
         if(name != null && !name.isEmpty()) {
-            DataOutputStream outputName = new DataOutputStream(socket.getOutputStream());  // using different library 'DataStreamObject' as need to transmit name before player object created
-            outputName.writeUTF(name);  // transmitting player's name to server
-            outputName.flush();  // flushing/ deleting transmitted message to allow for new outgoing messages
+            connection.handshake(spectating ? name : ServerConnection.sessionRequest(boardRequest + name), true);  // transmitting player's name to server... asking for compact binary messages (server may decline) and a session so a dropped connection can carry on
         }
 
         messageLabel.setBackground(Color.lightGray);  // setting message box to light grey colour
         frame.getContentPane().add(messageLabel, "South");  // adding message box to bottom 'South' of GUI
 
-        JPanel boardPanel = new JPanel();  // creating component instance within JFrame window
+        buildBoard(ServerConnection.STANDARD_ROWS, ServerConnection.STANDARD_COLUMNS);  // standard board unless server sends 'BOARD'
+    }
+
+    /**
+     * Creating grid of empty squares of given shape (replacing any grid already shown) and a renderer for it
+     */
+    private void buildBoard(int rows, int columns) {
+        if (boardPanel != null) {
+            frame.getContentPane().remove(boardPanel);
+        }
+        board = new Square[rows * columns];
+
+        boardPanel = new JPanel();  // creating component instance within JFrame window
         boardPanel.setBackground(Color.black);  // setting background colour of panel (component) to black
-        boardPanel.setLayout(new GridLayout(6, 9, 2, 2));  // creating a 6x9 grid with 2x2 square sizes
+        boardPanel.setLayout(new GridLayout(rows, columns, 2, 2));  // creating a rows x columns grid with 2x2 gaps between squares
 
         // iterating through each square/element on the board/array
         for (int i = 0; i < board.length; i++) {
@@ -74,78 +94,105 @@ public class Client {
                 */
                 public void mousePressed(MouseEvent e) {
                     //currentSquare = board[j];  // setting current square as clicked
-                    out.println("MOVE " + j);  // using 'MOVE' keyword to aid Server to process location player wishes to place disc
-                    //System.out.println(j);
+                    try {
+                        connection.sendMove(j);  // using 'MOVE' message to aid Server to process location player wishes to place disc
+                    } catch (IOException ex) {
+                        renderer.setMessage("Disconnected!");
+                    }
                 }
             });
             boardPanel.add(board[i]);  // add current square's contents if any to board panel to be displayed
         }
         frame.getContentPane().add(boardPanel, "Center");  // display panel in centre of GUI
+        frame.setSize(Math.max(FRAME_WIDTH, columns * SQUARE_WIDTH), Math.max(FRAME_HEIGHT, rows * SQUARE_HEIGHT + 20));  // room for every disc
+        frame.revalidate();
+        renderer = new RenderBatcher(board, messageLabel, frame);
     }
 
     /**
      * Initialises playing state of Connect Five game
-     * -> using keywords like 'WELCOME', 'VALID_MOVE'... to distinguish between different game states
+     * -> messages like 'WELCOME', 'VALID_MOVE'... read in by 'GameSession' and passed to methods below
+     * -> methods below run on the network thread so they only record changes... 'RenderBatcher' draws them on Swing's thread
      */
     public void play() throws Exception {
-        String response;  // used to store messages read in from server
-
-        // using try/catch statements to avoid our program crashing if it fails to retrieve certain elements
+        // using try/finally so socket is always closed once game is over (winner/draw/server gone)
         try {
-            response = in.readLine();  // reading in current message from server
-
-            // if we receive 'WELCOME' message from server... we then welcome current player to game
-            if (response.startsWith("WELCOME")) {
-                String input = response.substring(8);  // reading in all characters after 'WELCOME' i.e. the player's name
-                System.out.println("\nWelcome To Connect Five " + input + "!");
-
-                icon = new ImageIcon(getClass().getResource("/resources/disc_blue.png"));  // setting current client to 'RED' disc
-                opponentIcon = new ImageIcon(getClass().getResource("/resources/disc_red.png"));  // setting opponent client to 'BLUE' disc
-
-                frame.setTitle("Connect Five (Genesys) - Player = " + input);  // setting GUI frame title
-            }
-
-            while (true) {
-                response = in.readLine();  // reading in current message from server
-
-                // if receive 'VALID_MOVE' from server... insert current player's disc into board and create message
-                if (response.startsWith("VALID_MOVE")) {
-                    messageLabel.setText("Opponent's Turn!");  // setting message of current player's GUI to 'Opponent's Turn!'
-                    currentSquare=board[Integer.parseInt(response.substring(10))];  // retrieving current square on board where current player inserted disc
-                    currentSquare.placeIcon(icon);  // inserting current player's disc colour into board
-                    currentSquare.repaint();  // use 'repaint()' method to alter current square colour
-
-                    // if receive 'OPPONENT_MOVED' from server... insert opponent player's disc into board and create message
-                } else if (response.startsWith("OPPONENT_MOVED")) {
-                    int loc = Integer.parseInt(response.substring(15));  // retrieving index on board where opponent player inserted disc
-                    board[loc].placeIcon(opponentIcon);  // inserting opponent player's disc colour into board
-                    board[loc].repaint();  // use 'repaint()' method to alter opponent player's square colour
-                    messageLabel.setText("Your Turn!");  // setting message of opponent player's GUI to 'Your Turn!'
-
-                    // if receive 'VICTORY' from server...
-                } else if (response.startsWith("VICTORY")) {
-                    messageLabel.setText("You Win!");  // setting message of current player's GUI to 'Your Win!'
-                    break;  // game over i.e. break
-
-                    // if receive 'DEFEAT' from server...
-                } else if (response.startsWith("DEFEAT")) {
-                    messageLabel.setText("You Lose!");  // setting message of current player's GUI to 'You Lose!'
-                    break;  // game over i.e. break
-
-                    // if receive 'TIE' from server...
-                } else if (response.startsWith("TIE")) {
-                    messageLabel.setText("Draw!");  // setting message of current player's GUI to 'You Lose!'
-                    break;  // game over i.e. break
-
-                    // if receive message 'MESSAGE' from server...
-                } else if (response.startsWith("MESSAGE")) {
-                    messageLabel.setText(response.substring(8));  // setting message of current player's GUI to current inputted message
-                }
-            }
+            GameSession.play(connection, this);
         }
         // statement gets executed after try-catch conditions
         finally {
-            socket.close();  // close current socket
+            connection.close();  // close current socket
+        }
+    }
+
+    /**
+     * If we receive 'WELCOME' message from server... we then welcome current player to game
+     */
+    @Override
+    public void welcome(String input) {
+        System.out.println("\nWelcome To Connect Five " + input + "!");
+        renderer.setTitle("Connect Five (Genesys) - Player = " + input);  // setting GUI frame title
+    }
+
+    /**
+     * If we receive 'BOARD' from server... board is not the standard 6x9 so grid is rebuilt to its shape
+     * Waits for Swing to finish so every disc after this goes on the new grid
+     */
+    @Override
+    public void board(int rows, int columns, int winLength) {
+        try {
+            SwingUtilities.invokeAndWait(() -> buildBoard(rows, columns));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * If receive 'VALID_MOVE' from server... insert current player's disc into board and create message
+     */
+    @Override
+    public void validMove(int square) {
+        if (!spectating) {
+            renderer.setMessage("Opponent's Turn!");  // setting message of current player's GUI to 'Opponent's Turn!'
+        }
+        renderer.placeIcon(square, icon);  // inserting current player's disc colour into board (drawn next frame)
+    }
+
+    /**
+     * If receive 'OPPONENT_MOVED' from server... insert opponent player's disc into board and create message
+     */
+    @Override
+    public void opponentMoved(int loc) {
+        renderer.placeIcon(loc, opponentIcon);  // inserting opponent player's disc colour into board
+        if (!spectating) {
+            renderer.setMessage("Your Turn!");
+        }  // setting message of opponent player's GUI to 'Your Turn!'
+    }
+
+    /**
+     * If receive message 'MESSAGE' from server...
+     */
+    @Override
+    public void message(String text) {
+        renderer.setMessage(text);  // setting message of current player's GUI to current inputted message
+    }
+
+    /**
+     * If receive 'VICTORY', 'DEFEAT' or 'TIE' from server...
+     */
+    @Override
+    public void gameOver(int result) {
+        if (spectating) {
+            return;  // winner already named in server's last message
+        }
+        if (result == ServerConnection.VICTORY) {
+            renderer.setMessage("You Win!");  // setting message of current player's GUI to 'Your Win!'
+        } else if (result == ServerConnection.DEFEAT) {
+            renderer.setMessage("You Lose!");  // setting message of current player's GUI to 'You Lose!'
+        } else {
+            renderer.setMessage("Draw!");  // setting message of current player's GUI to 'Draw!'
         }
     }
 
@@ -173,16 +220,39 @@ public class Client {
 
     /**
      * Main method which creates a new Client instance, creates GUI and initialises current Player to begin playing
+     * '--spectate [game id]' -> watch a game instead (newest game in progress if no id given)
+     * '--host H --port N' -> server (or gateway) to connect to (localhost:4999 if not given)
+     * '--rows N --columns N --win N' -> ask for a board other than the server's (6x9, five in a row if not given)
      */
     public static void main(String[] args) throws Exception {
+        java.util.List<String> options = java.util.Arrays.asList(args);
+        int at = options.indexOf("--spectate");
+        String spectate = at == -1 ? null : at + 1 < args.length && !args[at + 1].startsWith("--") ? args[at + 1] : "";
+        int hostAt = options.indexOf("--host");
+        String host = hostAt == -1 ? "localhost" : args[hostAt + 1];  // localhost -> this machine's IP address
+        int portAt = options.indexOf("--port");
+        int port = portAt == -1 ? PORT : Integer.parseInt(args[portAt + 1]);
+        String boardRequest = "";
+        if (options.contains("--rows") || options.contains("--columns") || options.contains("--win")) {
+            boardRequest = ServerConnection.boardRequest("", option(args, "--rows", ServerConnection.STANDARD_ROWS),
+                    option(args, "--columns", ServerConnection.STANDARD_COLUMNS), option(args, "--win", ServerConnection.STANDARD_WIN_LENGTH));
+        }
+
         while (true) {
-            Client client = new Client("localhost");  // creating new Client object on localhost (this machine's IP address)
+            Client client = new Client(host, port, spectate, boardRequest);  // creating new Client object connected to given server
             client.frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);  // exit/stop application once GUI closed
-            client.frame.setSize(480, 320);  // setting width and height of frame
             client.frame.setVisible(true);  // showing GUI to screen
             client.frame.setResizable(false);  // GUI not resizable (square sizes need to be fixed)
             client.play();  // initialise 'play()' method to begin
             break; // when game ends (winner/draw/user left...) we exit/stop application (Client instance)
         }
     }
+
+    /**
+     * Returns number following given option (e.g. '--rows 20') or default if option not passed
+     */
+    private static int option(String[] args, String name, int defaultValue) {
+        int at = java.util.Arrays.asList(args).indexOf(name);
+        return at == -1 || at + 1 >= args.length ? defaultValue : Integer.parseInt(args[at + 1]);
+    }
 }
\ No newline at end of file
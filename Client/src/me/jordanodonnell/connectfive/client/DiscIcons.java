@@ -0,0 +1,43 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * DiscIcons Class: Disc images decoded and scaled once per process and shared by every board
+ * Images are drawn at their final size up front so painting a square is a plain copy (no decoding or scaling per frame)
+ */
+final class DiscIcons {
+
+    static final int SIZE = 40;  // width and height of a disc in pixels (fits one board square)
+
+    static final ImageIcon BLUE = load("/resources/disc_blue.png");
+    static final ImageIcon RED = load("/resources/disc_red.png");
+
+    private DiscIcons() {
+    }
+
+    private static ImageIcon load(String resource) {
+        try (InputStream input = DiscIcons.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing image " + resource);
+            }
+            BufferedImage source = ImageIO.read(input);
+
+            BufferedImage scaled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.drawImage(source, 0, 0, SIZE, SIZE, null);
+            graphics.dispose();
+            return new ImageIcon(scaled);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable image " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package me.jordanodonnell.connectfive.server.client;
+
+/**
+ * GameListener Interface: What a client does with each message from the server
+ * Implemented by the Swing 'Client' and by the headless bots in 'LoadGenerator'
+ */
+public interface GameListener {
+
+    /**
+     * Server has accepted player's name
+     */
+    void welcome(String name);
+
+    /**
+     * Board is not the standard 6x9... sent straight after 'welcome()' (or first thing when spectating)
+     */
+    void board(int rows, int columns, int winLength);
+
+    /**
+     * Player's own disc was inserted at given board location
+     */
+    void validMove(int square);
+
+    /**
+     * Opponent's disc was inserted at given board location
+     */
+    void opponentMoved(int square);
+
+    /**
+     * Informational message e.g. 'Your Turn!' or 'Not Possible Move!'
+     */
+    void message(String text);
+
+    /**
+     * Game finished... result is 'ServerConnection.VICTORY', 'DEFEAT' or 'TIE'
+     */
+    void gameOver(int result);
+}
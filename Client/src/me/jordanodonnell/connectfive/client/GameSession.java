@@ -0,0 +1,66 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.io.IOException;
+
+/**
+ * GameSession Class: Reads in messages from server for one game and passes each one to a 'GameListener'
+ * Same protocol handling for the Swing client and the headless load generator
+ */
+public final class GameSession {
+
+    private GameSession() {
+    }
+
+    /**
+     * Playing until game is over... returns result ('ServerConnection.VICTORY', 'DEFEAT', 'TIE') or -1 if disconnected
+     * Connection dropping mid-game is resumed if the server gave us a session (moves missed are read in as usual)
+     */
+    public static int play(ServerConnection connection, GameListener listener) throws IOException {
+        while (true) {
+            int response;  // used to store type of message read in from server
+            try {
+                response = connection.read();
+            } catch (IOException e) {
+                if (connection.resume()) {
+                    continue;
+                }
+                throw e;
+            }
+            if (response == -1) {  // disconnected
+                if (connection.resume()) {
+                    continue;
+                }
+                return -1;
+            }
+
+            switch (response) {
+                case ServerConnection.WELCOME:
+                    listener.welcome(connection.text());
+                    break;
+                case ServerConnection.BOARD:
+                    listener.board(connection.rows(), connection.columns(), connection.winLength());
+                    break;
+                case ServerConnection.VALID_MOVE:
+                    listener.validMove(connection.square());
+                    break;
+                case ServerConnection.OPPONENT_MOVED:
+                    listener.opponentMoved(connection.square());
+                    break;
+                case ServerConnection.MESSAGE:
+                    listener.message(connection.text());
+                    break;
+                case ServerConnection.GOODBYE:
+                    String reason = connection.text();
+                    listener.message("Disconnected: " + reason.substring(reason.indexOf(' ') + 1));  // reason code dropped
+                    return -1;  // server closing... session (if any) already dropped, nothing to resume
+                case ServerConnection.VICTORY:
+                case ServerConnection.DEFEAT:
+                case ServerConnection.TIE:
+                    listener.gameOver(response);
+                    return response;  // game over i.e. break
+                default:
+                    break;  // 'SESSION' (kept by connection itself) or message client does not recognise
+            }
+        }
+    }
+}
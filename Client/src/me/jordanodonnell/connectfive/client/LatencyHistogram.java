@@ -0,0 +1,84 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram Class: Lock-free histogram of latencies in microseconds
+ * Buckets are log-linear (16 per power of two, so ~6% precision) which keeps it small enough to share between
+ * thousands of threads... recording is one atomic increment
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 16;  // buckets per power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int BUCKETS = 2 * SUB_BUCKETS + 40 * SUB_BUCKETS;  // covers up to ~2^44 microseconds
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Recording one latency (negative values count as 0)
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(bucket(Math.max(0, micros)));
+    }
+
+    /**
+     * Returns latency at given percentile (e.g. 0.99) as the upper edge of its bucket, or 0 if nothing recorded
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperEdge(i);
+            }
+        }
+        return upperEdge(BUCKETS - 1);
+    }
+
+    /**
+     * Returns number of latencies recorded
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns e.g. 'p50=180us p90=240us p99=910us max=4000us (n=12000)'
+     */
+    public String summary() {
+        return String.format("p50=%dus p90=%dus p99=%dus max=%dus (n=%d)",
+                percentile(0.50), percentile(0.90), percentile(0.99), percentile(1.0), count());
+    }
+
+    /**
+     * Values below 32 get a bucket each... above that the top 5 bits of the value pick the bucket
+     */
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1);
+        int index = 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperEdge(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,346 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadGenerator Class: Headless clients for load testing a server... no Swing, no console input
+ * Runs N simulated players in one JVM (a thread each), every one playing game after game through 'GameSession'
+ * (same protocol handling as the Swing client) and reporting connection rate, move round trip times and games per second
+ *
+ *      java LoadGenerator --players 2000 --seconds 60 --strategy random --binary
+ *      java LoadGenerator --host localhost --port 4999 --players 200 --strategy scripted:4433221100
+ *      java LoadGenerator --players 20 --spectators 2000 --binary      (spectators watch newest game, rejoining when it ends)
+ *      java LoadGenerator --players 200 --rows 20 --columns 20 --win 5   (players ask for a board other than 6x9)
+ *      java LoadGenerator --players 200 --flaky 0.02     (2% of moves followed by the bot dropping its socket... resumed)
+ */
+public class LoadGenerator {
+
+    private final String host;
+    private final int port;
+    private final boolean binary;
+    private final MoveStrategy strategy;
+    private final String boardRequest;  // e.g. 'BOARD 20 20 5 ' in front of bot names ("" -> server's board)
+    private final double flaky;  // chance of bot dropping its connection after each move (0 -> never)
+
+    /**
+     * Totals since start... each report prints the change since the last one
+     */
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong failedConnections = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicInteger activePlayers = new AtomicInteger();
+    private final AtomicLong spectatorUpdates = new AtomicLong();  // discs seen by spectators
+    private final AtomicLong drops = new AtomicLong();  // connections dropped on purpose ('--flaky')
+    private final LatencyHistogram connectTimes = new LatencyHistogram();
+    private final LatencyHistogram moveTimes = new LatencyHistogram();
+
+    private volatile boolean running = true;
+
+    LoadGenerator(String host, int port, boolean binary, MoveStrategy strategy, String boardRequest, double flaky) {
+        this.host = host;
+        this.port = port;
+        this.binary = binary;
+        this.strategy = strategy;
+        this.boardRequest = boardRequest;
+        this.flaky = flaky;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 4999;
+        int players = 100;
+        int seconds = 30;
+        int spectators = 0;
+        boolean binary = false;
+        MoveStrategy strategy = MoveStrategy.random();
+        int rows = -1;
+        int columns = -1;
+        int winLength = -1;
+        double flaky = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--players": players = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--spectators": spectators = Integer.parseInt(args[++i]); break;
+                case "--binary": binary = true; break;
+                case "--rows": rows = Integer.parseInt(args[++i]); break;
+                case "--columns": columns = Integer.parseInt(args[++i]); break;
+                case "--win": winLength = Integer.parseInt(args[++i]); break;
+                case "--flaky": flaky = Double.parseDouble(args[++i]); break;
+                case "--strategy":
+                    String name = args[++i];
+                    strategy = name.startsWith("scripted:") ? MoveStrategy.scripted(name.substring(9)) : MoveStrategy.random();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        String boardRequest = "";
+        if (rows != -1 || columns != -1 || winLength != -1) {
+            boardRequest = ServerConnection.boardRequest("", rows != -1 ? rows : ServerConnection.STANDARD_ROWS,
+                    columns != -1 ? columns : ServerConnection.STANDARD_COLUMNS,
+                    winLength != -1 ? winLength : ServerConnection.STANDARD_WIN_LENGTH);
+        }
+
+        new LoadGenerator(host, port, binary, strategy, boardRequest, flaky).run(players, spectators, seconds);
+    }
+
+    /**
+     * Starting given number of players (and spectators), reporting every 5 seconds and stopping them after given number of seconds
+     */
+    void run(int players, int spectators, int seconds) throws InterruptedException {
+        System.out.println("\nLoad Generator: " + players + " players" + (spectators > 0 ? " + " + spectators + " spectators" : "")
+                + " against " + host + ":" + port + (binary ? " (binary)" : " (text)") + " for " + seconds + "s");
+
+        for (int i = 0; i < players; i++) {
+            Thread thread = new Thread(new Bot("bot-" + i, new Random(i)), "bot-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (int i = 0; i < spectators; i++) {
+            Thread thread = new Thread(new Spectator(new Random(-i - 1)), "spectator-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long lastConnections = 0;
+        long lastGames = 0;
+        long lastMoves = 0;
+        long lastUpdates = 0;
+
+        while (System.nanoTime() < end) {
+            Thread.sleep(5000);
+            long connectionsNow = connections.get();
+            long gamesNow = games.get();
+            long movesNow = moves.get();
+            long updatesNow = spectatorUpdates.get();
+
+            System.out.printf("active=%d connects/s=%.0f games/s=%.1f moves/s=%.0f failed=%d | move RTT %s | connect %s%s%n",
+                    activePlayers.get(), (connectionsNow - lastConnections) / 5.0, (gamesNow - lastGames) / 5.0,
+                    (movesNow - lastMoves) / 5.0, failedConnections.get(), moveTimes.summary(), connectTimes.summary(),
+                    spectators > 0 ? String.format(" | spectator discs/s=%.0f", (updatesNow - lastUpdates) / 5.0) : "");
+            lastConnections = connectionsNow;
+            lastGames = gamesNow;
+            lastMoves = movesNow;
+            lastUpdates = updatesNow;
+        }
+        running = false;
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nTotal: connections=%d games=%d (%.1f games/s) moves=%d (%.0f moves/s)%s%nMove RTT: %s%n",
+                connections.get(), games.get(), games.get() / elapsed, moves.get(), moves.get() / elapsed,
+                flaky > 0 ? " drops=" + drops.get() : "", moveTimes.summary());
+    }
+
+    /**
+     * Bot Class: One simulated player... connects, plays a game, reconnects for the next one until told to stop
+     * Keeps track of column heights from the moves it hears about so its strategy only picks columns with room
+     */
+    private final class Bot implements Runnable, GameListener {
+        private final String name;
+        private final Random random;
+        private int[] heights = new int[ServerConnection.STANDARD_COLUMNS];  // discs in each column
+        private int rows = ServerConnection.STANDARD_ROWS;
+        private ServerConnection connection;
+        private int movesMade;
+        private long moveSentAt;
+        private boolean gameOver;
+
+        Bot(String name, Random random) {
+            this.name = name;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            activePlayers.incrementAndGet();
+            try {
+                while (running) {
+                    playOneGame();
+                }
+            } finally {
+                activePlayers.decrementAndGet();
+            }
+        }
+
+        private void playOneGame() {
+            heights = new int[ServerConnection.STANDARD_COLUMNS];  // until server says otherwise ('board()')
+            rows = ServerConnection.STANDARD_ROWS;
+            movesMade = 0;
+            gameOver = false;
+
+            long connectStart = System.nanoTime();
+            try {
+                connection = new ServerConnection(host, port);
+                connection.handshake(ServerConnection.sessionRequest(boardRequest + name), binary);
+            } catch (IOException e) {
+                failedConnections.incrementAndGet();
+                pause();
+                return;
+            }
+            connections.incrementAndGet();
+            connectTimes.record((System.nanoTime() - connectStart) / 1000);
+
+            try {
+                if (GameSession.play(connection, this) != -1) {
+                    games.incrementAndGet();
+                }
+            } catch (IOException e) {
+                failedConnections.incrementAndGet();
+            } finally {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // already closed
+                }
+            }
+        }
+
+        /**
+         * Backing off after a failed connection so a server that is down is not hammered
+         */
+        private void pause() {
+            try {
+                Thread.sleep(100 + random.nextInt(400));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void move() {
+            if (gameOver || !running) {
+                return;
+            }
+            int column = strategy.chooseColumn(heights, rows, movesMade, random);
+            try {
+                moveSentAt = System.nanoTime();
+                connection.sendMove(column);  // top square of column... disc drops to lowest free square
+                if (flaky > 0 && random.nextDouble() < flaky) {
+                    drops.incrementAndGet();
+                    connection.close();  // as if the network went... 'GameSession' resumes
+                }
+            } catch (IOException e) {
+                // connection gone... next read fails too and 'GameSession' resumes (server then says whose turn it is)
+            }
+        }
+
+        @Override
+        public void welcome(String name) {
+        }
+
+        @Override
+        public void board(int rows, int columns, int winLength) {
+            this.rows = rows;
+            heights = new int[columns];
+        }
+
+        @Override
+        public void validMove(int square) {
+            moveTimes.record((System.nanoTime() - moveSentAt) / 1000);
+            moves.incrementAndGet();
+            heights[square % heights.length]++;
+            movesMade++;
+        }
+
+        @Override
+        public void opponentMoved(int square) {
+            heights[square % heights.length]++;
+            move();  // may be a losing move already... a rejected move after game over is harmless
+        }
+
+        @Override
+        public void message(String text) {
+            if (text.equals("Your Turn!")) {
+                move();
+            }
+        }
+
+        @Override
+        public void gameOver(int result) {
+            gameOver = true;
+        }
+    }
+
+    /**
+     * Spectator Class: Watches newest game in progress, counting discs it is sent... rejoins once that game is over
+     */
+    private final class Spectator implements Runnable, GameListener {
+        private final Random random;
+        private ServerConnection connection;
+        private boolean noGame;  // server had no game to watch... connection closed by us, not a failure
+
+        Spectator(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                noGame = false;
+                try {
+                    connection = new ServerConnection(host, port);
+                    try {
+                        connection.handshake("SPECTATE", binary);
+                        GameSession.play(connection, this);
+                    } finally {
+                        connection.close();
+                    }
+                } catch (IOException e) {
+                    if (!noGame) {
+                        failedConnections.incrementAndGet();
+                    }
+                }
+                try {
+                    Thread.sleep(random.nextInt(100));  // no game yet (or just ended)... try again shortly
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void welcome(String name) {
+        }
+
+        @Override
+        public void board(int rows, int columns, int winLength) {
+        }
+
+        @Override
+        public void validMove(int square) {
+            spectatorUpdates.incrementAndGet();
+        }
+
+        @Override
+        public void opponentMoved(int square) {
+            spectatorUpdates.incrementAndGet();
+        }
+
+        @Override
+        public void message(String text) {
+            if (text.equals("No Game to Spectate!")) {
+                noGame = true;
+                try {
+                    connection.close();  // ends 'GameSession.play()'
+                } catch (IOException ignored) {
+                    // already closed
+                }
+            }
+        }
+
+        @Override
+        public void gameOver(int result) {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.util.Random;
+
+/**
+ * MoveStrategy Interface: How a headless player picks its next move
+ */
+public interface MoveStrategy {
+
+    /**
+     * Returns column to drop next disc into, given discs already in each column (one entry per column), rows on the board
+     * and number of moves this player has made
+     */
+    int chooseColumn(int[] heights, int rows, int moveNumber, Random random);
+
+    /**
+     * Returns strategy that picks a random column with room left
+     */
+    static MoveStrategy random() {
+        return (heights, rows, moveNumber, random) -> {
+            int column = random.nextInt(heights.length);
+            while (heights[column] == rows) {
+                column = (column + 1) % heights.length;
+            }
+            return column;
+        };
+    }
+
+    /**
+     * Returns strategy that plays given columns in order (e.g. '4433') then carries on from the next column with room
+     */
+    static MoveStrategy scripted(String columns) {
+        return (heights, rows, moveNumber, random) -> {
+            int column = (columns.charAt(moveNumber % columns.length()) - '0') % heights.length;
+            while (heights[column] == rows) {
+                column = (column + 1) % heights.length;
+            }
+            return column;
+        };
+    }
+}
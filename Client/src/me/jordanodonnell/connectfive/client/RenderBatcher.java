@@ -0,0 +1,104 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.util.Arrays;
+import javax.swing.Icon;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+/**
+ * RenderBatcher Class: Carries board updates from the network thread to Swing's event dispatch thread (EDT)
+ *
+ * Network thread only records what changed (squares, message, title)... once per frame the EDT applies everything
+ * recorded since the last frame in one go, so a burst of messages (e.g. spectating or replaying) costs one
+ * Swing update rather than one per message, and Swing components are only ever touched on the EDT
+ */
+final class RenderBatcher {
+
+    private static final int FRAME_MILLIS = 16;  // ~60 frames per second
+
+    private final Client.Square[] board;
+    private final JLabel messageLabel;
+    private final JFrame frame;
+
+    /**
+     * Changes recorded since last frame (guarded by 'this')
+     */
+    private final Icon[] pendingIcons;  // null -> square unchanged
+    private String pendingMessage;  // null -> unchanged
+    private String pendingTitle;
+    private boolean dirty;
+
+    private final Timer timer = new Timer(FRAME_MILLIS, event -> applyFrame());
+
+    RenderBatcher(Client.Square[] board, JLabel messageLabel, JFrame frame) {
+        this.board = board;
+        this.messageLabel = messageLabel;
+        this.frame = frame;
+        pendingIcons = new Icon[board.length];
+        timer.setRepeats(false);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Recording disc placed at given square... safe to call from any thread
+     */
+    synchronized void placeIcon(int square, Icon icon) {
+        pendingIcons[square] = icon;
+        changed();
+    }
+
+    /**
+     * Recording text for message label (only the latest text in a frame is shown)
+     */
+    synchronized void setMessage(String text) {
+        pendingMessage = text;
+        changed();
+    }
+
+    synchronized void setTitle(String title) {
+        pendingTitle = title;
+        changed();
+    }
+
+    /**
+     * First change since last frame starts the frame timer... later ones just join the same frame
+     */
+    private void changed() {
+        if (!dirty) {
+            dirty = true;
+            timer.restart();  // thread safe... fires on the EDT
+        }
+    }
+
+    /**
+     * Applying every change since last frame (EDT only)
+     */
+    private void applyFrame() {
+        Icon[] icons = new Icon[board.length];
+        String message;
+        String title;
+
+        synchronized (this) {
+            System.arraycopy(pendingIcons, 0, icons, 0, icons.length);
+            Arrays.fill(pendingIcons, null);
+            message = pendingMessage;
+            title = pendingTitle;
+            pendingMessage = null;
+            pendingTitle = null;
+            dirty = false;
+        }
+
+        for (int i = 0; i < icons.length; i++) {
+            if (icons[i] != null) {
+                board[i].placeIcon(icons[i]);  // repaints merged by Swing into a single paint of the board
+            }
+        }
+        if (message != null) {
+            messageLabel.setText(message);
+        }
+        if (title != null) {
+            frame.setTitle(title);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package me.jordanodonnell.connectfive.server.client;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ServerConnection Class: Client's side of the protocol (handshake, reading server messages, sending moves)
+ *
+ * Client asks for the compact BINARY format by sending 'PROTOCOL BINARY' straight after its name... if the server answers
+ * with the same line everything after it arrives (and is sent) in BINARY, otherwise the original TEXT lines are kept
+ *      BINARY -> one byte opcode, then board index (moves... one byte below 128, else two with top bit set),
+ *                one byte length + UTF-8 text (messages) or rows, columns, win length (board)
+ *
+ * Board is the standard 6x9 (five in a row) unless the server sends 'BOARD'... a board shape can be asked for by
+ * starting the handshake name with 'BOARD <rows> <columns> <win length> ' (see 'boardRequest()')
+ *
+ * Starting the name with 'SESSION ' (see 'sessionRequest()') asks for a session token ('SESSION' message)... if the
+ * connection drops mid-game 'resume()' connects again and takes the seat back, the server sending the moves missed
+ */
+public class ServerConnection {
+
+    /**
+     * Server message types returned by 'read()' (also the BINARY opcodes)
+     */
+    public static final int MOVE = 0x01;
+    public static final int VALID_MOVE = 0x02;
+    public static final int OPPONENT_MOVED = 0x03;
+    public static final int VICTORY = 0x04;
+    public static final int DEFEAT = 0x05;
+    public static final int TIE = 0x06;
+    public static final int MESSAGE = 0x07;
+    public static final int WELCOME = 0x08;
+    public static final int BOARD = 0x09;
+    public static final int SESSION = 0x0A;
+    public static final int GOODBYE = 0x0B;  // server disconnecting us (or game abandoned)... text is '<reason code> <reason>'
+    public static final int UNKNOWN = 0x7F;  // TEXT line client does not recognise
+
+    private static final String BINARY_REQUEST = "PROTOCOL BINARY";
+    private static final int MAX_RESUMES = 3;  // reconnects in a row without the server taking us back before giving up
+    private static final long RESUME_BACKOFF_MILLIS = 250;  // wait before each reconnect (times attempt number)
+
+    /**
+     * Board played unless server sends 'BOARD'
+     */
+    public static final int STANDARD_ROWS = 6;
+    public static final int STANDARD_COLUMNS = 9;
+    public static final int STANDARD_WIN_LENGTH = 5;
+
+    private final String host;
+    private final int port;
+    private volatile Socket socket;  // replaced by 'resume()'
+    private InputStream input;  // used to read in messages from server
+    private volatile OutputStream output;  // used to transmit messages to server
+    private final Object writeLock = new Object();  // moves and handshakes written whole (any thread)
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();  // TEXT line currently being read in
+    private volatile boolean binary;  // true once server has acknowledged BINARY
+    private boolean requestedBinary;  // asked again when resuming
+
+    private String token;  // session token from last 'SESSION' read (null -> cannot resume)
+    private int seen;  // discs read so far ('VALID_MOVE' and 'OPPONENT_MOVED')... server sends only those after it
+    private int resumesLeft = MAX_RESUMES;
+
+    private int square;  // board index of last message read
+    private String text;  // text of last message read
+    private int rows = STANDARD_ROWS;  // board shape from last 'BOARD' read
+    private int columns = STANDARD_COLUMNS;
+    private int winLength = STANDARD_WIN_LENGTH;
+
+    /**
+     * Creating socket connection to server on given host and port
+     */
+    public ServerConnection(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+        connect();
+    }
+
+    private void connect() throws IOException {
+        Socket fresh = new Socket(host, port);
+        fresh.setTcpNoDelay(true);
+        input = new BufferedInputStream(fresh.getInputStream());
+        output = fresh.getOutputStream();
+        socket = fresh;
+        binary = false;  // new connection starts in TEXT
+    }
+
+    /**
+     * Transmitting player's name (and optionally asking for BINARY) to server
+     * Name sent with 'writeUTF' as player object does not exist on server until it has been read in
+     */
+    public void handshake(String name, boolean requestBinary) throws IOException {
+        requestedBinary = requestBinary;
+        ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+        new DataOutputStream(handshake).writeUTF(name);
+        if (requestBinary) {
+            handshake.write((BINARY_REQUEST + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        synchronized (writeLock) {
+            output.write(handshake.toByteArray());  // name and request leave together
+            output.flush();
+        }
+    }
+
+    /**
+     * Connecting again after connection dropped and asking for our seat back ('RESUME <token> <discs seen>')
+     * Returns false if there is no session to resume or the server has not taken us back after a few tries...
+     * otherwise reading carries on (missed moves first) as if nothing had happened
+     * Called on the thread reading messages
+     */
+    public boolean resume() {
+        while (token != null && resumesLeft > 0) {
+            resumesLeft--;
+            try {
+                Thread.sleep(RESUME_BACKOFF_MILLIS * (MAX_RESUMES - resumesLeft));
+                socket.close();
+                connect();
+                handshake("RESUME " + token + " " + seen, requestedBinary);
+                return true;
+            } catch (IOException e) {
+                // server (or gateway) not back yet... try again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transmitting request to insert disc at given board location
+     * Safe to call from any thread (e.g. Swing's mouse listener)
+     */
+    public void sendMove(int location) throws IOException {
+        byte[] message = !binary ? ("MOVE " + location + "\n").getBytes(StandardCharsets.US_ASCII)
+                : location < 0x80 ? new byte[]{MOVE, (byte) location}
+                : new byte[]{MOVE, (byte) (0x80 | location >>> 8), (byte) location};
+
+        synchronized (writeLock) {
+            output.write(message);
+            output.flush();
+        }
+    }
+
+    /**
+     * Reading in next message from server and returning its type... details from 'square()' and 'text()'
+     * Returns -1 once server has closed the connection
+     */
+    public int read() throws IOException {
+        int type = readMessage();
+        if (type == VALID_MOVE || type == OPPONENT_MOVED) {
+            seen++;
+        } else if (type == SESSION) {
+            int space = text.indexOf(' ');
+            token = space == -1 ? text : text.substring(0, space);
+            if (space != -1) {
+                seen = Integer.parseInt(text.substring(space + 1));  // resumed... discs sent again start from here
+            }
+            resumesLeft = MAX_RESUMES;  // server has us (back)
+        } else if (type == GOODBYE) {
+            token = null;  // seat forfeited or game abandoned... nothing to resume
+        }
+        return type;
+    }
+
+    private int readMessage() throws IOException {
+        while (true) {
+            int first = input.read();
+            if (first == -1) {
+                return -1;
+            }
+            if (binary) {
+                return readBinary(first);
+            }
+
+            String message = readLine(first);
+            if (message == null) {
+                return -1;
+            }
+            if (message.equals(BINARY_REQUEST)) {
+                binary = true;  // server acknowledged... next message onwards is BINARY
+                continue;
+            }
+            return parseText(message);
+        }
+    }
+
+    /**
+     * Returns board index carried by last 'VALID_MOVE' or 'OPPONENT_MOVED'
+     */
+    public int square() {
+        return square;
+    }
+
+    /**
+     * Returns text carried by last 'MESSAGE', 'WELCOME', 'SESSION' or 'GOODBYE'
+     */
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Returns board shape carried by last 'BOARD' (standard board until one arrives)
+     */
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int winLength() {
+        return winLength;
+    }
+
+    /**
+     * Returns handshake name asking server for a board of given shape
+     */
+    public static String boardRequest(String name, int rows, int columns, int winLength) {
+        return "BOARD " + rows + " " + columns + " " + winLength + " " + name;
+    }
+
+    /**
+     * Returns handshake name asking server for a session token (goes in front of any board request)
+     */
+    public static String sessionRequest(String name) {
+        return "SESSION " + name;
+    }
+
+    /**
+     * Returns true if BINARY is in use
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private int readBinary(int type) throws IOException {
+        switch (type) {
+            case VALID_MOVE:
+            case OPPONENT_MOVED:
+                square = readByte();
+                if ((square & 0x80) != 0) {
+                    square = (square & 0x7F) << 8 | readByte();
+                }
+                return type;
+            case BOARD:
+                rows = readByte();
+                columns = readByte();
+                winLength = readByte();
+                return type;
+            case MESSAGE:
+            case WELCOME:
+            case SESSION:
+            case GOODBYE:
+                byte[] utf8 = new byte[readByte()];
+                for (int i = 0; i < utf8.length; i++) {
+                    utf8[i] = (byte) readByte();
+                }
+                text = new String(utf8, StandardCharsets.UTF_8);
+                return type;
+            default:
+                return type;  // VICTORY, DEFEAT, TIE carry nothing
+        }
+    }
+
+    private int readByte() throws IOException {
+        int next = input.read();
+        if (next == -1) {
+            throw new EOFException("Server closed connection");
+        }
+        return next;
+    }
+
+    /**
+     * Reading rest of TEXT line (line ending dropped)... returns null if server closed connection mid-line
+     */
+    private String readLine(int first) throws IOException {
+        line.reset();
+        int next = first;
+
+        while (next != '\n') {
+            if (next == -1) {
+                return null;
+            }
+            if (next != '\r') {
+                line.write(next);
+            }
+            next = input.read();
+        }
+        return line.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private int parseText(String message) {
+        if (message.startsWith("VALID_MOVE")) {
+            square = Integer.parseInt(message.substring(10));
+            return VALID_MOVE;
+        } else if (message.startsWith("OPPONENT_MOVED")) {
+            square = Integer.parseInt(message.substring(15));
+            return OPPONENT_MOVED;
+        } else if (message.startsWith("VICTORY")) {
+            return VICTORY;
+        } else if (message.startsWith("DEFEAT")) {
+            return DEFEAT;
+        } else if (message.startsWith("TIE")) {
+            return TIE;
+        } else if (message.startsWith("MESSAGE")) {
+            text = message.substring(8);
+            return MESSAGE;
+        } else if (message.startsWith("WELCOME")) {
+            text = message.substring(8);
+            return WELCOME;
+        } else if (message.startsWith("SESSION")) {
+            text = message.substring(8);
+            return SESSION;
+        } else if (message.startsWith("GOODBYE")) {
+            text = message.substring(8);
+            return GOODBYE;
+        } else if (message.startsWith("BOARD")) {
+            String[] shape = message.split(" ");
+            rows = Integer.parseInt(shape[1]);
+            columns = Integer.parseInt(shape[2]);
+            winLength = Integer.parseInt(shape[3]);
+            return BOARD;
+        }
+        return UNKNOWN;
+    }
+}
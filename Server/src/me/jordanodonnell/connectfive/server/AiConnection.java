@@ -0,0 +1,100 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * AiConnection Class: Computer opponent plugged into a 'Game' in place of a client's socket
+ * Messages the game sends are read for whose turn it is... when it is the computer's turn 'AiEngine' searches
+ * for a move (on its own pool) and plays it through 'handleMove()' just as a client's 'MOVE' would be
+ */
+final class AiConnection implements Connection {
+
+    private final AiEngine engine;
+    private volatile Game.Player player;
+    private volatile boolean yourTurn;  // set by the messages queued since last 'flush()'
+    private volatile boolean open = true;
+
+    AiConnection(AiEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public void send(int type, int square) {
+        switch (type) {
+            case Protocol.OPPONENT_MOVED:
+                yourTurn = true;
+                break;
+            case Protocol.VICTORY:
+            case Protocol.DEFEAT:
+            case Protocol.TIE:
+                close();  // game over... nothing left to play
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void send(int type, String text) {
+        if (type == Protocol.MESSAGE && text.equals("Your Turn!")) {
+            yourTurn = true;
+        }
+    }
+
+    @Override
+    public void send(Protocol.Frame frame) {
+    }
+
+    /**
+     * Everything for a move has arrived (and the move is published)... start thinking if it is our turn
+     */
+    @Override
+    public void flush() {
+        think();
+    }
+
+    @Override
+    public void open(Game.Player player) {
+        this.player = player;
+        think();  // 'Your Turn!' is flushed before the game opens the connection
+    }
+
+    @Override
+    public int pendingBytes() {
+        return 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void think() {
+        Game.Player current = player;
+        if (current == null || !open || !yourTurn) {
+            return;
+        }
+        yourTurn = false;
+
+        GameState state = current.game().state();
+        engine.think(state, column -> play(current, state, column));
+    }
+
+    /**
+     * Playing column found for given state (top square of column... disc drops to lowest free square)
+     * Turned away while still possible -> game is held as the opponent resumes ('Game.Player.resume()'), which only
+     * lasts while their missed moves are queued... tried again rather than waiting for a turn that has already come
+     */
+    private void play(Game.Player current, GameState searched, int column) {
+        while (open && !current.handleMove(column)) {
+            GameState now = current.game().state();
+            if (now.isOver() || now.discCount != searched.discCount || searched.play(column) == null) {
+                return;  // game moved on (or column not possible)... nothing to retry
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * AiEngine Class: Picks moves for computer opponents ('AiConnection')
+ *
+ * Negamax with alpha-beta pruning and iterative deepening on 'Bitboard' longs... standard 6x9 board only
+ * ('Matchmaker' only gives computer opponents to players on 'Board.STANDARD')
+ *  -> moves ordered best-first (transposition table move, then centre columns outwards)
+ *  -> Zobrist-hashed transposition table shared by every search... a position scores the same whichever game it is in
+ *  -> 'lazy SMP': each search runs on several threads at once which only share the transposition table
+ *
+ * CPU is bounded twice over: every move has a time budget and all searches share one fixed pool of threads
+ */
+final class AiEngine {
+
+    private static final int WIN = 10_000;  // score for 5 in a row (less the moves needed to get there)
+    private static final int MATE_BOUND = WIN - Bitboard.SQUARES;  // scores beyond this are forced wins/losses
+    private static final int[] COLUMN_ORDER = {4, 3, 5, 2, 6, 1, 7, 0, 8};  // centre columns first (take part in most lines)
+    private static final int[] WINDOW_WEIGHTS = {0, 1, 4, 16, 64};  // value of an open window holding 0-4 of one player's discs
+    private static final int CHECK_CLOCK_NODES = 1023;  // nodes searched between deadline checks
+
+    /**
+     * Transposition table flags
+     */
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;  // score is at least stored value (search failed high)
+    private static final int UPPER = 2;  // score is at most stored value (search failed low)
+
+    private static final int TABLE_BITS = 20;  // 1M entries (16MB), shared by all games
+    private static final long[][] ZOBRIST = new long[2][64];  // random key per player per bit
+    private static final long[] WINDOWS;  // every line of 5 squares on the board as a bit mask
+
+    static {
+        Random random = new Random(0x5EED);
+        for (int seat = 0; seat < 2; seat++) {
+            for (int bit = 0; bit < 64; bit++) {
+                ZOBRIST[seat][bit] = random.nextLong();
+            }
+        }
+
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};  // row step, column step
+        long[] windows = new long[4 * Bitboard.SQUARES];
+        int count = 0;
+        for (int[] direction : directions) {
+            for (int row = 0; row < Bitboard.ROWS; row++) {
+                for (int column = 0; column < Bitboard.COLUMNS; column++) {
+                    int lastRow = row + direction[0] * (Bitboard.WIN_LENGTH - 1);
+                    int lastColumn = column + direction[1] * (Bitboard.WIN_LENGTH - 1);
+                    if (lastRow >= Bitboard.ROWS || lastColumn < 0 || lastColumn >= Bitboard.COLUMNS) {
+                        continue;
+                    }
+                    long window = 0;
+                    for (int i = 0; i < Bitboard.WIN_LENGTH; i++) {
+                        int index = (row + direction[0] * i) * Bitboard.COLUMNS + column + direction[1] * i;
+                        window |= 1L << Bitboard.toBit(index);
+                    }
+                    windows[count++] = window;
+                }
+            }
+        }
+        WINDOWS = java.util.Arrays.copyOf(windows, count);
+    }
+
+    private final long[] tableKeys = new long[1 << TABLE_BITS];  // key XOR data, so torn writes never match
+    private final long[] tableData = new long[1 << TABLE_BITS];
+
+    private final ExecutorService pool;
+    private final int threadsPerSearch;
+    private final long budgetNanos;
+
+    /**
+     * Counters -> searches run, nodes searched and time spent (for nodes per second)
+     */
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * Creating engine with given pool size (all searches together), threads per search and time budget per move
+     */
+    AiEngine(int poolThreads, int threadsPerSearch, long budgetMillis) {
+        this.threadsPerSearch = Math.max(1, Math.min(threadsPerSearch, poolThreads));
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        pool = Executors.newFixedThreadPool(poolThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ai-search");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);  // players' I/O comes first
+            return thread;
+        });
+    }
+
+    /**
+     * Searching for a move for the player to move in given state... column passed to 'onMove' once time is up
+     * Returns straight away (search runs on the engine's pool)
+     */
+    void think(GameState state, IntConsumer onMove) {
+        pool.execute(() -> onMove.accept(search(state)));
+    }
+
+    /**
+     * Returns best column found for player to move within time budget (runs on calling thread plus helper threads)
+     */
+    int search(GameState state) {
+        long start = System.nanoTime();
+        AtomicBoolean stop = new AtomicBoolean();
+        long deadline = start + budgetNanos;
+
+        // helpers search same position from slightly different depths, filling the shared table for the main search
+        for (int i = 1; i < threadsPerSearch; i++) {
+            int helper = i;
+            pool.execute(() -> new Search(state, deadline, stop, helper).iterate());
+        }
+        Search main = new Search(state, deadline, stop, 0);
+        int column = main.iterate();
+        stop.set(true);
+
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return column;
+    }
+
+    /**
+     * Returns summary of counters e.g. 'AI: searches=12 nodes=3400000 nps=1400000'
+     */
+    String stats() {
+        long nanos = searchNanos.sum();
+        long searched = nodes.sum();
+        return String.format("AI: searches=%d nodes=%d nps=%d",
+                searches.sum(), searched, nanos == 0 ? 0 : (long) (searched / (nanos / 1e9)));
+    }
+
+    /**
+     * Returns nodes searched per second over all searches so far
+     */
+    long nodesPerSecond() {
+        long nanos = searchNanos.sum();
+        return nanos == 0 ? 0 : (long) (nodes.sum() / (nanos / 1e9));
+    }
+
+    /**
+     * Search Class: One thread's iterative deepening search of one position
+     */
+    private final class Search {
+        private final GameState root;
+        private final long deadline;
+        private final AtomicBoolean stop;
+        private final int helper;  // 0 = main search
+        private long searched;
+
+        Search(GameState root, long deadline, AtomicBoolean stop, int helper) {
+            this.root = root;
+            this.deadline = deadline;
+            this.stop = stop;
+            this.helper = helper;
+        }
+
+        /**
+         * Searching one move deeper at a time until time is up... returns best column of last completed depth
+         */
+        int iterate() {
+            int seat = root.turn;
+            long first = root.firstDiscs[0];  // standard board -> one 'long' each, laid out as 'Bitboard'
+            long second = root.secondDiscs[0];
+            long mine = seat == 0 ? first : second;
+            long theirs = seat == 0 ? second : first;
+            long key = hash(first, second);
+            int maxDepth = Bitboard.SQUARES - root.discCount;
+            int bestColumn = firstLegalColumn(mine | theirs);
+
+            for (int depth = 1 + helper % 2; depth <= maxDepth && !stop.get(); depth++) {
+                int column = searchRoot(mine, theirs, key, seat, depth);
+                if (stop.get()) {
+                    break;  // unfinished depth... keep last completed answer
+                }
+                bestColumn = column;
+            }
+            nodes.add(searched);
+            return bestColumn;
+        }
+
+        private int searchRoot(long mine, long theirs, long key, int seat, int depth) {
+            long occupied = mine | theirs;
+            int alpha = -WIN - 1;
+            int bestColumn = -1;
+            int ttColumn = tableMove(key);
+
+            for (int i = -1; i < COLUMN_ORDER.length; i++) {
+                int column = i == -1 ? ttColumn : COLUMN_ORDER[(i + helper) % COLUMN_ORDER.length];
+                if (column == -1 || (i >= 0 && column == ttColumn)) {
+                    continue;
+                }
+                int bit = Bitboard.lowestFreeBit(occupied, column);
+                if (bit == -1) {
+                    continue;
+                }
+
+                long next = mine | 1L << bit;
+                int score = Bitboard.isWin(next) ? WIN - 1
+                        : -negamax(theirs, next, key ^ ZOBRIST[seat][bit], 1 - seat, depth - 1, -WIN - 1, -alpha, 1);
+                if (stop.get()) {
+                    return bestColumn;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestColumn = column;
+                }
+            }
+            store(key, depth, alpha, EXACT, bestColumn, 0);
+            return bestColumn;
+        }
+
+        /**
+         * Returns score of position for player to move ('mine')
+         */
+        private int negamax(long mine, long theirs, long key, int seat, int depth, int alpha, int beta, int ply) {
+            if ((++searched & CHECK_CLOCK_NODES) == 0 && System.nanoTime() > deadline) {
+                stop.set(true);
+            }
+            if (stop.get()) {
+                return 0;
+            }
+
+            long occupied = mine | theirs;
+            if (Long.bitCount(occupied) == Bitboard.SQUARES) {
+                return 0;  // board full -> draw
+            }
+
+            // transposition table -> position already searched at least this deep?
+            int slot = (int) (key >>> (64 - TABLE_BITS));
+            long data = tableData[slot];
+            int ttColumn = -1;
+            if ((tableKeys[slot] ^ data) == key) {
+                int storedScore = fromTable((short) data, ply);
+                int storedDepth = (int) (data >>> 16) & 0xFF;
+                int flag = (int) (data >>> 24) & 0x3;
+                ttColumn = (int) (data >>> 26 & 0xF) - 1;
+
+                if (storedDepth >= depth
+                        && (flag == EXACT || flag == LOWER && storedScore >= beta || flag == UPPER && storedScore <= alpha)) {
+                    return storedScore;
+                }
+            }
+
+            if (depth == 0) {
+                return evaluate(mine, theirs);
+            }
+
+            int originalAlpha = alpha;
+            int best = -WIN - 1;
+            int bestColumn = -1;
+
+            for (int i = -1; i < COLUMN_ORDER.length; i++) {
+                int column = i == -1 ? ttColumn : COLUMN_ORDER[i];
+                if (column == -1 || (i >= 0 && column == ttColumn)) {
+                    continue;
+                }
+                int bit = Bitboard.lowestFreeBit(occupied, column);
+                if (bit == -1) {
+                    continue;
+                }
+
+                long next = mine | 1L << bit;
+                if (Bitboard.isWin(next)) {
+                    store(key, depth, WIN - ply - 1, EXACT, column, ply);
+                    return WIN - ply - 1;  // nothing beats winning now
+                }
+
+                int score = -negamax(theirs, next, key ^ ZOBRIST[seat][bit], 1 - seat, depth - 1, -beta, -alpha, ply + 1);
+                if (stop.get()) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestColumn = column;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    break;  // opponent would never allow this line
+                }
+            }
+
+            int flag = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+            store(key, depth, best, flag, bestColumn, ply);
+            return best;
+        }
+
+        private int firstLegalColumn(long occupied) {
+            for (int column : COLUMN_ORDER) {
+                if (Bitboard.lowestFreeBit(occupied, column) != -1) {
+                    return column;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Scoring a position without searching... every line of 5 still open to one player counts for them,
+     * more so the more of their discs it already holds
+     */
+    private static int evaluate(long mine, long theirs) {
+        int score = 0;
+        for (long window : WINDOWS) {
+            long minePart = window & mine;
+            long theirPart = window & theirs;
+            if (theirPart == 0) {
+                score += WINDOW_WEIGHTS[Long.bitCount(minePart)];
+            } else if (minePart == 0) {
+                score -= WINDOW_WEIGHTS[Long.bitCount(theirPart)];
+            }
+        }
+        return score;
+    }
+
+    private static long hash(long first, long second) {
+        long key = 0;
+        for (long discs = first; discs != 0; discs &= discs - 1) {
+            key ^= ZOBRIST[0][Long.numberOfTrailingZeros(discs)];
+        }
+        for (long discs = second; discs != 0; discs &= discs - 1) {
+            key ^= ZOBRIST[1][Long.numberOfTrailingZeros(discs)];
+        }
+        return key;
+    }
+
+    /**
+     * Storing result in transposition table (always replaces)
+     * data -> score (16 bits) | depth (8 bits) | flag (2 bits) | column + 1 (4 bits)
+     */
+    private void store(long key, int depth, int score, int flag, int column, int ply) {
+        long data = (toTable(score, ply) & 0xFFFFL) | (long) depth << 16 | (long) flag << 24 | (long) (column + 1) << 26;
+        int slot = (int) (key >>> (64 - TABLE_BITS));
+        tableData[slot] = data;
+        tableKeys[slot] = key ^ data;
+    }
+
+    private int tableMove(long key) {
+        int slot = (int) (key >>> (64 - TABLE_BITS));
+        long data = tableData[slot];
+        return (tableKeys[slot] ^ data) == key ? (int) (data >>> 26 & 0xF) - 1 : -1;
+    }
+
+    /**
+     * Win/loss scores are stored relative to the position (not the root) so they stay right wherever the position is met
+     */
+    private static int toTable(int score, int ply) {
+        return score > MATE_BOUND ? score + ply : score < -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > MATE_BOUND ? score - ply : score < -MATE_BOUND ? score + ply : score;
+    }
+}
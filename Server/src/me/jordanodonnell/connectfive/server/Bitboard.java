@@ -0,0 +1,79 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * Bitboard Class: Packs the standard 6x9 board ('Board.STANDARD') into a single 'long' per disc colour and provides
+ * the bit tricks used by 'AiEngine' to search it... the one 'long' 'Board' keeps per player on that board is already this
+ *
+ * Layout is column-major with one spare 'sentinel' bit on top of every column (7 bits per column, 63 bits in total)
+ * so that shifting a line of discs can never wrap around from one column into the next...
+ *
+ *      column:   0   1   2  ...  8
+ *      row 0:    5  12  19  ... 61      <- top row of the board
+ *      row 5:    0   7  14  ... 56      <- bottom row of the board
+ *
+ * Board 'index' (0 - 53) is the same row-major square index the client and protocol already use
+ */
+final class Bitboard {
+
+    static final int ROWS = Board.STANDARD.rows;
+    static final int COLUMNS = Board.STANDARD.columns;
+    static final int SQUARES = Board.STANDARD.squares;
+    static final int WIN_LENGTH = Board.STANDARD.winLength;
+
+    private static final int HEIGHT = ROWS + 1;  // bits used per column (including sentinel bit)
+
+    /**
+     * Shift distances for the '4' directions a line of discs can run in
+     */
+    private static final int VERTICAL = 1;
+    private static final int HORIZONTAL = HEIGHT;
+    private static final int LEFT_DIAGONAL = HEIGHT - 1;  // top-left to bottom-right on screen
+    private static final int RIGHT_DIAGONAL = HEIGHT + 1;  // bottom-left to top-right on screen
+
+    private Bitboard() {
+    }
+
+    /**
+     * Converts a board index (row-major, 0 = top left) into its bit position
+     */
+    static int toBit(int index) {
+        return (index % COLUMNS) * HEIGHT + (ROWS - 1 - index / COLUMNS);
+    }
+
+    /**
+     * Converts a bit position back into a board index (row-major, 0 = top left)
+     */
+    static int toIndex(int bit) {
+        return (ROWS - 1 - bit % HEIGHT) * COLUMNS + bit / HEIGHT;
+    }
+
+    /**
+     * Returns the lowest free bit in the given column or -1 if the column is full
+     */
+    static int lowestFreeBit(long occupied, int column) {
+        int free = Long.numberOfTrailingZeros(~(occupied >>> (column * HEIGHT)));  // discs already stacked in column
+        return free < ROWS ? column * HEIGHT + free : -1;
+    }
+
+    /**
+     * Returns true if the given discs contain 5 in a row
+     * Only the player who just moved needs checking and any new line must pass through the disc just dropped,
+     * so a handful of shift-and-mask operations on that player's 'long' replaces a scan of the whole board
+     */
+    static boolean isWin(long discs) {
+        return hasLine(discs, VERTICAL)
+                || hasLine(discs, HORIZONTAL)
+                || hasLine(discs, LEFT_DIAGONAL)
+                || hasLine(discs, RIGHT_DIAGONAL);
+    }
+
+    /**
+     * Returns true if 5 discs in a row are found in one direction
+     * pairs -> fours -> fives by folding the board over itself (no loops, no allocation)
+     */
+    private static boolean hasLine(long discs, int shift) {
+        long pairs = discs & (discs >>> shift);  // bit set where disc and its neighbour are set
+        long fours = pairs & (pairs >>> 2 * shift);  // bit set where two adjacent pairs are set
+        return (fours & (discs >>> 4 * shift)) != 0;  // bit set where a fifth disc follows the four
+    }
+}
@@ -0,0 +1,236 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Board Class: Shape of the board a game is played on (rows, columns, discs in a row needed to win) and where each
+ * square's disc is kept
+ *
+ * Discs are kept as in 'Bitboard' -> column by column, bottom row first, with a spare 'sentinel' bit on top of every
+ * column so lines can never run from one column into the next. Bigger boards spread columns over as many 'long's as
+ * they need, whole columns per 'long'... 6x9 fits in one (exactly the 'Bitboard' layout), 20x20 needs seven
+ *
+ * Win check only looks at lines through the disc just dropped, using tables worked out once per board shape
+ *  -> one 'long' -> shift-and-mask folds in the 4 directions as 'Bitboard' does, fold distances worked out for 'winLength'
+ *  -> several    -> vertical folded the same way ('long' holding the disc's column), then for the other 3 directions the
+ *                   squares up to 'winLength - 1' either side of the disc as (word, mask) ('line-mask table', zero mask
+ *                   where the line runs off the board) walked out from the middle... the same few steps on 20x20 as on 6x9
+ */
+final class Board {
+
+    static final int MIN_SIDE = 4;
+    static final int MAX_SIDE = 32;  // 1024 squares at most... board index always fits in 15 bits (see 'Protocol')
+    static final int MIN_WIN_LENGTH = 3;
+    static final int MAX_WIN_LENGTH = 10;
+
+    private static final Map<Integer, Board> SHAPES = new ConcurrentHashMap<>();  // tables built once per shape
+
+    /**
+     * Row step, column step for the directions a line can run across columns (horizontal, both diagonals)...
+     * a vertical line is always inside one 'long' so is folded like a one 'long' board instead
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 1}, {1, -1}};
+
+    /**
+     * Original 6x9, five in a row (what every client expects unless told otherwise with 'BOARD')
+     * Declared after the tables above as its constructor uses them
+     */
+    static final Board STANDARD = new Board(6, 9, 5);
+
+    final int rows;
+    final int columns;
+    final int winLength;
+    final int squares;
+    final int words;  // 'long's per player
+
+    private final int height;  // bits per column (including sentinel bit)
+    private final int[] columnBits;  // column -> bit of its bottom square (word * 64 + bit in word)
+    private final int[] squareBits;  // board index -> bit
+
+    /**
+     * One 'long' -> how far (in squares) each fold after the first shifts a line over itself
+     * pairs -> fours -> eights -> sixteens, each fold only adding what 'winLength' still needs (0 -> fold does nothing)
+     */
+    private final int secondFold;
+    private final int thirdFold;
+    private final int fourthFold;
+
+    /**
+     * Several 'long's -> line-mask table
+     */
+    private final int span;  // entries per line (winLength - 1 either side of the square, plus the square)
+    private final int[] lineWords;  // [(square * 4 + direction) * span + step] -> word holding that square
+    private final long[] lineMasks;  // ... -> bit of that square in its word (0 -> off the board)
+
+    private Protocol.Frame frame;  // 'BOARD' message for this shape (built when first needed)
+
+    private Board(int rows, int columns, int winLength) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.squares = rows * columns;
+
+        height = rows + 1;
+        int columnsPerWord = 64 / height;
+        words = (columns + columnsPerWord - 1) / columnsPerWord;
+        columnBits = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            columnBits[column] = column / columnsPerWord * 64 + column % columnsPerWord * height;
+        }
+        squareBits = new int[squares];
+        for (int square = 0; square < squares; square++) {
+            squareBits[square] = columnBits[square % columns] + rows - 1 - square / columns;
+        }
+
+        secondFold = Math.min(2, winLength - 2);  // run of 2 after first fold... up to 4
+        thirdFold = Math.min(2 + secondFold, winLength - 2 - secondFold);  // ... up to 8
+        fourthFold = winLength - 2 - secondFold - thirdFold;  // ... up to 16
+
+        span = 2 * winLength - 1;
+        int entries = words == 1 ? 0 : squares * DIRECTIONS.length * span;  // one 'long' never needs the table
+        lineWords = new int[entries];
+        lineMasks = new long[entries];
+        for (int square = 0; entries > 0 && square < squares; square++) {
+            int row = square / columns;
+            int column = square % columns;
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                int base = (square * DIRECTIONS.length + direction) * span + winLength - 1;
+                for (int step = -(winLength - 1); step < winLength; step++) {
+                    int r = row + DIRECTIONS[direction][0] * step;
+                    int c = column + DIRECTIONS[direction][1] * step;
+                    if (r < 0 || r >= rows || c < 0 || c >= columns) {
+                        continue;  // mask left 0... walk stops here
+                    }
+                    int bit = squareBits[r * columns + c];
+                    lineWords[base + step] = bit >>> 6;
+                    lineMasks[base + step] = 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns board of given shape, or null if it is outside the sizes supported
+     */
+    static Board of(int rows, int columns, int winLength) {
+        if (rows < MIN_SIDE || rows > MAX_SIDE || columns < MIN_SIDE || columns > MAX_SIDE
+                || winLength < MIN_WIN_LENGTH || winLength > MAX_WIN_LENGTH || winLength > Math.max(rows, columns)) {
+            return null;
+        }
+        if (rows == STANDARD.rows && columns == STANDARD.columns && winLength == STANDARD.winLength) {
+            return STANDARD;
+        }
+        return SHAPES.computeIfAbsent(rows << 16 | columns << 8 | winLength, key -> new Board(rows, columns, winLength));
+    }
+
+    /**
+     * Returns board index of lowest empty square in given column or -1 if the column is full
+     */
+    int lowestFreeSquare(long[] firstDiscs, long[] secondDiscs, int column) {
+        int bit = columnBits[column];
+        int word = bit >>> 6;
+        int free = Long.numberOfTrailingZeros(~((firstDiscs[word] | secondDiscs[word]) >>> (bit & 63)));  // discs already stacked
+        return free < rows ? (rows - 1 - free) * columns + column : -1;
+    }
+
+    /**
+     * Returns copy of given discs with a disc added on given square
+     */
+    long[] withDisc(long[] discs, int square) {
+        long[] next = discs.clone();
+        next[squareBits[square] >>> 6] |= 1L << squareBits[square];
+        return next;
+    }
+
+    /**
+     * Adding a disc on given square to given discs in place, or taking it back if already there
+     * For 'Simulator', which plays millions of moves on the same arrays where 'withDisc()' would copy every move
+     */
+    void flip(long[] discs, int square) {
+        discs[squareBits[square] >>> 6] ^= 1L << squareBits[square];
+    }
+
+    /**
+     * Returns true if square is set in given discs
+     */
+    boolean has(long[] discs, int square) {
+        return (discs[squareBits[square] >>> 6] & 1L << squareBits[square]) != 0;
+    }
+
+    /**
+     * Returns true if given discs hold 'winLength' in a row through the given square (the disc just dropped)
+     */
+    boolean isWin(long[] discs, int square) {
+        if (this == STANDARD) {
+            return Bitboard.isWin(discs[0]);  // same layout... shift distances known up front
+        }
+        if (words == 1) {
+            long board = discs[0];
+            return hasLine(board, 1)  // vertical
+                    || hasLine(board, height)  // horizontal
+                    || hasLine(board, height - 1)  // diagonals
+                    || hasLine(board, height + 1);
+        }
+
+        int bit = squareBits[square];
+        if (hasLine(discs[bit >>> 6], 1)) {  // vertical
+            return true;
+        }
+        int middle = winLength - 1;
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            int base = (square * DIRECTIONS.length + direction) * span + middle;
+            int count = 1;
+            for (int step = 1; step <= middle && (discs[lineWords[base - step]] & lineMasks[base - step]) != 0; step++) {
+                count++;
+            }
+            for (int step = 1; step <= middle && (discs[lineWords[base + step]] & lineMasks[base + step]) != 0; step++) {
+                count++;
+            }
+            if (count >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if 'winLength' discs in a row are found in one direction within one 'long'
+     * Discs folded over themselves as in 'Bitboard' (no loops, no allocation)
+     */
+    private boolean hasLine(long discs, int shift) {
+        long run = discs & discs >>> shift;  // bit set where disc and its neighbour are set
+        run &= run >>> secondFold * shift;
+        run &= run >>> thirdFold * shift;
+        return (run & run >>> fourthFold * shift) != 0;
+    }
+
+    /**
+     * Returns 'BOARD' message telling a client this shape (shared, encoded once)
+     */
+    synchronized Protocol.Frame frame() {
+        if (frame == null) {
+            frame = new Protocol.Frame.Builder().add(this).build();
+        }
+        return frame;
+    }
+
+    /**
+     * Reading 'BOARD <rows> <columns> <win length>' off the front of a handshake name (split on spaces)
+     * Returns the board, or null if name does not start with a board request (or asks for an unsupported one)
+     */
+    static Board parse(String[] fields) {
+        try {
+            return fields.length >= 4 && fields[0].equals(Protocol.BOARD_REQUEST)
+                    ? of(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]))
+                    : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " (" + winLength + " in a row)";
+    }
+}
@@ -0,0 +1,52 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * Connection Interface: Link between a 'Game.Player' and the client it represents
+ * Hides whether the client is served by its own thread ('SocketConnection') or by a shared event loop ('NioServer')
+ */
+interface Connection {
+
+    /**
+     * Queues a board message for the client e.g. 'VALID_MOVE' or 'OPPONENT_MOVED 40' (see 'Protocol' for types)
+     * Encoded in whichever format (TEXT/BINARY) the client negotiated... nothing is transmitted until 'flush()'
+     * Safe to call from any thread (opponent's moves are sent from the opponent's side)
+     */
+    void send(int type, int square);
+
+    /**
+     * Queues a text message for the client i.e. 'MESSAGE' or 'WELCOME'
+     */
+    void send(int type, String text);
+
+    /**
+     * Queues a pre-encoded frame (see 'Protocol.Frame') in the client's format... the frame's array is shared, not copied
+     */
+    void send(Protocol.Frame frame);
+
+    /**
+     * Transmits everything queued so far in one write
+     * Called once per move (not per message) so e.g. 'VALID_MOVE' + 'VICTORY' leave in the same packet
+     */
+    void flush();
+
+    /**
+     * Begins passing moves read in from the client to the given player
+     * null -> client only watches (spectator)... commands are read in (e.g. switch to BINARY) but moves ignored
+     */
+    void open(Game.Player player);
+
+    /**
+     * Returns bytes queued for the client but not yet written (how far behind a slow client is)
+     */
+    int pendingBytes();
+
+    /**
+     * Returns true until the connection has been closed
+     */
+    boolean isOpen();
+
+    /**
+     * Closes connection to the client
+     */
+    void close();
+}
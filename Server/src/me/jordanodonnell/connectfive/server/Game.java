@@ -0,0 +1,456 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Game Class (Parent class): Empty board initialised and methods to determine...
+ 1. If there is a winner
+ 2. If there are any spaces left on board to fill
+ 3. If move player is trying to make is a possible move
+
+ * No locks... board, turn and status live in an immutable 'GameState' swapped in with a compare-and-set,
+ * and players are only told about a move (socket I/O) after the new state is in place
+ */
+class Game {
+
+    /**
+     * Game ids... seeded from the clock, then past every id already in the journal ('seedIds()') so a restarted
+     * server never reuses one
+     */
+    private static final AtomicLong IDS = new AtomicLong(System.currentTimeMillis() << 12);
+
+    /**
+     * Set on every id a 'Gateway' gives out and never on a node's own (clock-seeded ids stay far below it), so games
+     * routed to a node can never take the id of one it started itself
+     */
+    static final long GATEWAY_ID_BIT = 1L << 62;
+
+    /**
+     * Making sure ids given out from now on are past given one (highest the journal already holds)... a quick
+     * restart after a busy run would otherwise start below ids that run used
+     */
+    static void seedIds(long used) {
+        IDS.accumulateAndGet(used, Math::max);
+    }
+
+    final long id;
+
+    /**
+     * Where accepted moves are recorded (null -> not recorded)
+     */
+    private final Journal journal;
+
+    /**
+     * Current state of the game (board, whose turn, status)
+     */
+    private final AtomicReference<GameState> state;
+
+    /**
+     * Player who moves first (seat 0)... their opponent is seat 1
+     */
+    Player firstPlayer;
+
+    /**
+     * Connections watching this game (created when the first spectator arrives)
+     */
+    private volatile Spectators spectators;
+
+    /**
+     * Last moves played (ring of 'RECENT_MOVES', disc number -> square) so a player who resumes is sent only what they missed
+     */
+    static final int RECENT_MOVES = 64;
+    private final int[] recentMoves = new int[RECENT_MOVES];
+
+    /**
+     * Resumable seats and timers (null -> players leaving end nothing early, e.g. benchmarks)
+     * 'reaper' -> idle check waiting on the timer wheel (guarded by 'this')
+     */
+    Sessions sessions;
+    TimerWheel.Timeout reaper;
+    volatile long lastMoveAt = System.nanoTime();
+
+    Game() {
+        this(Board.STANDARD, null);
+    }
+
+    /**
+     * Creating game on given board whose moves are recorded in given journal (null -> not recorded)
+     */
+    Game(Board board, Journal journal) {
+        this(IDS.incrementAndGet(), board, journal);
+    }
+
+    /**
+     * Creating game with id chosen elsewhere (by the 'Gateway' routing its players here)
+     */
+    Game(long id, Board board, Journal journal) {
+        this.id = id;
+        this.journal = journal;
+        this.state = new AtomicReference<>(GameState.start(board));
+        if (journal != null) {
+            journal.gameStarted(id, board);
+        }
+    }
+
+    /**
+     * Returns current snapshot of the game
+     */
+    public GameState state() {
+        return state.get();
+    }
+
+    /**
+     * Returns true if a winner has been found
+     * Win is checked once per move inside 'possibleMove()' (lines through the square just played) so this is just a lookup
+     * Winner Check Algorithms Demonstration: https://bit.ly/3f2ipZN
+     */
+    public boolean foundWinner() {
+        return state.get().status == GameState.WON;
+    }
+
+    /**
+     * Returns true if no empty spaces left on board (full)
+     */
+    public boolean boardFull() {
+        return state.get().isFull();
+    }
+
+    /**
+     * Adding a spectator to this game (board snapshot first, then every move)
+     */
+    void watch(Connection connection) {
+        Spectators watching = spectators;
+        if (watching == null) {
+            synchronized (this) {
+                if (spectators == null) {
+                    spectators = new Spectators(this);
+                }
+                watching = spectators;
+            }
+        }
+        watching.join(connection);
+    }
+
+    /**
+     * Returns number of spectators watching this game
+     */
+    int spectatorCount() {
+        Spectators watching = spectators;
+        return watching == null ? 0 : watching.count();
+    }
+
+    /**
+     * Returns both players (seat 0 first)
+     */
+    Player[] players() {
+        return new Player[] {firstPlayer, firstPlayer.opponent};
+    }
+
+    /**
+     * Returns player whose turn it is in given state
+     */
+    private Player playerToMove(GameState current) {
+        return current.turn == 0 ? firstPlayer : firstPlayer.opponent;
+    }
+
+    /**
+     * Determines if move player is making is a possible one
+     * i.e. if player choose 4th column and lowest row is occupied... place disc in next available row (above) in column
+     * Moves out of turn (or before last move has been sent out) are turned away before any work is done
+     * New state swapped in with a compare-and-set (retried if another move got in first) then both players told
+     */
+    public int possibleMove(int location, Player player) {
+        long start = System.nanoTime();
+        GameState current;
+        GameState next;
+
+        do {
+            current = state.get();
+            if (!current.published || player != playerToMove(current)) {
+                Metrics.MOVES_REJECTED.increment();
+                return -1;
+            }
+            long checkStart = System.nanoTime();
+            next = current.play(location);
+            if (next == null) {
+                Metrics.MOVES_REJECTED.increment();
+                return -1;  // if move not possible i.e. board full, winner declared etc... return -1
+            }
+            Metrics.WIN_CHECK.recordSince(checkStart);  // timed here, not in 'play()', so replays and searches are not counted
+        } while (!state.compareAndSet(current, next));
+
+        lastMoveAt = start;
+        if (journal != null) {
+            journal.moved(id, current.turn, next.lastSquare, next.status);  // recorded before anyone is told
+        }
+        publish(next, player);
+
+        Metrics.MOVES.increment();
+        Metrics.MOVE.recordSince(start);
+        return next.lastSquare;  // return location (index) in which current player inserted disc
+    }
+
+    /**
+     * Telling both players (then any spectators) about a move once it is in place
+     * Messages are queued for both before the move is marked published (letting the next move in), then flushed
+     * so a slow socket only ever delays its own client
+     */
+    private void publish(GameState next, Player mover) {
+        mover.playerMoved(next);
+        mover.opponent.otherPlayerMoved(next);
+        recentMoves[(next.discCount - 1) & (RECENT_MOVES - 1)] = next.lastSquare;  // read only once published (see 'state')
+        state.set(next.markPublished());  // nothing else can change an unpublished state
+
+        mover.connection.flush();  // all of player's messages for this move in one write
+        mover.opponent.connection.flush();  // all of opponent's messages for this move in one write
+
+        Spectators watching = spectators;
+        if (watching != null) {
+            watching.moved(next);  // encoded once and sent on by a fan-out thread... players never wait on spectators
+        }
+        if (next.isOver() && sessions != null) {
+            sessions.ended(this);
+        }
+    }
+
+    /**
+     * Ending game early as given player left ('gone' -> the connection they left on), opponent wins...
+     * or as nobody has moved for too long (both null), nobody wins
+     * Does nothing if the game is already over or the player has since come back on another connection
+     * Returns true if game was abandoned
+     */
+    boolean abandon(Player leaver, Connection gone) {
+        GameState current;
+        while (true) {
+            current = state.get();
+            if (current.isOver() || (leaver != null && leaver.connection != gone)) {
+                return false;
+            }
+            if (!current.published) {
+                Thread.onSpinWait();  // a move (or resume) is being sent out... done in microseconds
+            } else if (state.compareAndSet(current, current.abandon())) {
+                break;
+            }
+        }
+        GameState abandoned = state.get();
+
+        if (journal != null) {
+            journal.gameAbandoned(id, leaver == null ? 2 : leaver == firstPlayer ? 0 : 1);
+        }
+        Metrics.GAMES_ABANDONED.increment();
+
+        if (leaver != null) {
+            Connection winner = leaver.opponent.connection;
+            winner.send(Protocol.MESSAGE, "Opponent Left!");
+            winner.send(Protocol.VICTORY, current.lastSquare);
+            winner.flush();
+        } else {
+            for (Player player : players()) {
+                player.connection.send(Protocol.MESSAGE, "Game Timed Out!");
+                player.connection.send(Protocol.GOODBYE, Protocol.goodbye(Protocol.GAME_ABANDONED));  // client drops its token
+                player.connection.flush();
+            }
+        }
+
+        Spectators watching = spectators;
+        if (watching != null) {
+            watching.moved(abandoned);
+        }
+        if (sessions != null) {
+            sessions.ended(this);
+        }
+        return true;
+    }
+
+    /**
+     * Player Class: Initialising attributes of player object and methods to determine:
+     1. Each player's opponent
+     2. If opponent has moved (i.e. executed their turn)
+     3. Current player's commands and process them
+
+     * Player does not own a thread or socket itself... messages go out and commands come in through its 'Connection'
+     * i.e. a thread per socket ('SocketConnection') or a shared selector event loop ('NioServer')
+     */
+
+    class Player {
+        volatile Connection connection;  // replaced when player resumes on a new connection
+        String name;
+        String discColour;
+        Player opponent;
+        String token;  // session token player can resume with (null -> no session, leaving ends the game)
+
+        /**
+         * Initialising attributes of Player constructor
+         * Player has already been welcomed by 'Matchmaker' when their handshake completed
+         */
+        public Player(Connection connection, String name, String discColour) {
+            this.connection = connection;
+            this.name = name;
+            this.discColour = discColour;
+        }
+
+        /**
+         * Returns game this player belongs to
+         */
+        public Game game() {
+            return Game.this;
+        }
+
+        /**
+         * Setting opponent for current player
+         */
+        public void setOpponent(Player opponent) {
+            this.opponent = opponent;
+        }
+
+        /**
+         * Queueing messages for this player after they have made a move
+         */
+        void playerMoved(GameState next) {
+            connection.send(Protocol.VALID_MOVE, next.lastSquare);  // output the current board location disc inserted
+
+            // if winner found...
+            if (next.status == GameState.WON) {
+                connection.send(Protocol.VICTORY, next.lastSquare);
+            }
+
+            // if board full...
+            if (next.isFull()) {
+                connection.send(Protocol.TIE, next.lastSquare);
+            }
+        }
+
+        /**
+         * Queueing messages for this player to determine the status of the game after opponent executes their turn
+         */
+        void otherPlayerMoved(GameState next) {
+            connection.send(Protocol.OPPONENT_MOVED, next.lastSquare);
+
+            if (next.status == GameState.WON) {
+                connection.send(Protocol.DEFEAT, next.lastSquare);
+            }
+            if (next.isFull()) {
+                connection.send(Protocol.TIE, next.lastSquare);
+            }
+        }
+
+        /**
+         * Starting game for this player
+         * Only called once all players (clients) have connected to server... moves from client then passed to 'handleMove()'
+         */
+        public void start() {
+            connection.send(Protocol.MESSAGE, "All Players Connected!");
+
+            // if current player moves first (player 1)... it's their turn
+            if (this == firstPlayer) {
+                connection.send(Protocol.MESSAGE, "Your Turn!");
+            }
+            connection.flush();
+            connection.open(this);
+        }
+
+        /**
+         * Processing a single 'MOVE' command read in from client (either protocol format)
+         * Both players are told about a possible move by 'possibleMove()' itself
+         * Returns false if it was turned away... connection decides whether the client is told (see 'RateLimiter')
+         * Moves out of turn are turned away first, from a single read of the current state
+         */
+        public boolean handleMove(int location) {
+            GameState current = state.get();
+            if (!current.published || playerToMove(current) != this) {
+                Metrics.MOVES_REJECTED.increment();
+                return false;
+            }
+            return possibleMove(location, this) != -1;
+        }
+
+        /**
+         * Player's connection ('gone') dropped... seat parked for the grace period if they have a session,
+         * otherwise (or if they were disconnected for misbehaving, 'forfeit') game abandoned and opponent wins
+         * Handled on the session timer thread as this can be called from inside a send to that connection
+         * (see 'Sessions.dropped()')
+         */
+        void disconnected(Connection gone, boolean forfeit) {
+            if (gone == connection && sessions != null && !state.get().isOver()) {
+                sessions.dropped(this, gone, forfeit);
+            }
+        }
+
+        /**
+         * Giving this seat to given connection (player came back with their token, having seen 'seen' discs)
+         * Game held (moves turned away) while the missed moves are sent, so none can slip in between... then
+         * the old connection is closed and moves read from the new one
+         */
+        void resume(Connection fresh, int seen) {
+            GameState current;
+            while (true) {
+                current = state.get();
+                if (current.isOver()) {
+                    break;  // nothing can change... no need to hold
+                }
+                if (!current.published) {
+                    Thread.onSpinWait();
+                } else if (state.compareAndSet(current, current.hold())) {
+                    break;
+                }
+            }
+
+            Connection old = connection;
+            connection = fresh;  // from now on publish()/abandon() write here
+            replay(fresh, current, seen);
+            if (!current.isOver()) {
+                state.set(current);  // released... same (published) state as before
+            }
+            fresh.flush();
+            if (old != fresh) {
+                old.close();  // may still look open if the drop was not noticed yet... ignored by 'disconnected()'
+            }
+            fresh.open(this);
+
+            if (!current.isOver()) {
+                opponent.connection.send(Protocol.MESSAGE, "Opponent Reconnected!");
+                opponent.connection.flush();
+            }
+        }
+
+        /**
+         * Queueing 'SESSION <token> <first disc sent>', discs given connection has not seen yet, then where the game stands
+         * Moves since 'seen' come from the ring of recent moves... too far behind (or nonsense) -> whole board sent instead,
+         * first disc 0 so the client counts discs from scratch rather than on top of what it had
+         */
+        private void replay(Connection to, GameState current, int seen) {
+            int seat = this == firstPlayer ? 0 : 1;
+            boolean recent = seen >= 0 && seen <= current.discCount && current.discCount - seen <= RECENT_MOVES;
+            to.send(Protocol.SESSION, token + " " + (recent ? seen : 0));
+            if (recent) {
+                for (int disc = seen; disc < current.discCount; disc++) {
+                    to.send(disc % 2 == seat ? Protocol.VALID_MOVE : Protocol.OPPONENT_MOVED, recentMoves[disc & (RECENT_MOVES - 1)]);
+                }
+            } else {
+                for (int square = 0; square < current.board.squares; square++) {
+                    int owner = current.owner(square);
+                    if (owner != -1) {
+                        to.send(owner == seat ? Protocol.VALID_MOVE : Protocol.OPPONENT_MOVED, square);
+                    }
+                }
+            }
+
+            if (current.status == GameState.WON) {
+                to.send((current.discCount - 1) % 2 == seat ? Protocol.VICTORY : Protocol.DEFEAT, current.lastSquare);
+            } else if (current.status == GameState.ABANDONED) {
+                to.send(Protocol.GOODBYE, Protocol.goodbye(Protocol.GAME_ABANDONED));
+            } else if (current.isFull()) {
+                to.send(Protocol.TIE, current.lastSquare);
+            } else {
+                to.send(Protocol.MESSAGE, "Reconnected!");
+                to.send(Protocol.MESSAGE, current.turn == seat ? "Your Turn!" : "Opponent's Turn!");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + discColour + ")";
+        }
+    }
+}
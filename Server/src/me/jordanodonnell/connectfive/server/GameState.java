@@ -0,0 +1,112 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * GameState Class: Immutable snapshot of one game (board, whose turn, status)
+ * 'Game' swaps snapshots with a compare-and-set, so every reader sees a consistent board without taking a lock
+ */
+final class GameState {
+
+    /**
+     * Game status
+     */
+    static final int PLAYING = 0;
+    static final int WON = 1;  // last move made 'winLength' in a row
+    static final int TIED = 2;  // board full without a winner
+    static final int ABANDONED = 3;  // a player left (or both went quiet) before the end... see 'Sessions'
+
+    final Board board;  // shape of the board (rows, columns, discs in a row to win)
+    final long[] firstDiscs;  // player 1's discs, one bit per square (see 'Board')... never modified once created
+    final long[] secondDiscs;  // player 2's discs
+    final int turn;  // seat of player to move next (0 = player 1, 1 = player 2)
+    final int discCount;  // discs on board
+    final int status;
+    final int lastSquare;  // board index of last disc played (-1 before first move)
+
+    /**
+     * True once everyone has been sent the last move... next move is not accepted until then so messages for
+     * one move always reach each client before messages for the next
+     */
+    final boolean published;
+
+    private GameState(Board board, long[] firstDiscs, long[] secondDiscs, int turn, int discCount, int status, int lastSquare,
+                      boolean published) {
+        this.board = board;
+        this.firstDiscs = firstDiscs;
+        this.secondDiscs = secondDiscs;
+        this.turn = turn;
+        this.discCount = discCount;
+        this.status = status;
+        this.lastSquare = lastSquare;
+        this.published = published;
+    }
+
+    /**
+     * Returns empty board of given shape, player 1 (seat 0) to move
+     */
+    static GameState start(Board board) {
+        return new GameState(board, new long[board.words], new long[board.words], 0, 0, PLAYING, -1, true);
+    }
+
+    /**
+     * Returns state after player to move drops a disc at given location, or null if that is not a possible move
+     * i.e. game over, column full or clicked square is below the lowest free square in its column
+     */
+    GameState play(int location) {
+        if (status != PLAYING || location < 0 || location >= board.squares) {
+            return null;
+        }
+
+        int square = board.lowestFreeSquare(firstDiscs, secondDiscs, location % board.columns);
+
+        // disc can only drop into lowest free square at or below the square clicked
+        if (square < location) {
+            return null;
+        }
+
+        long[] mover = board.withDisc(turn == 0 ? firstDiscs : secondDiscs, square);
+        int count = discCount + 1;
+        boolean won = board.isWin(mover, square);
+        int nextStatus = won ? WON : count == board.squares ? TIED : PLAYING;
+
+        return turn == 0
+                ? new GameState(board, mover, secondDiscs, 1, count, nextStatus, square, false)
+                : new GameState(board, firstDiscs, mover, 0, count, nextStatus, square, false);
+    }
+
+    /**
+     * Returns seat whose disc is on given square (0 or 1), or -1 if it is empty
+     */
+    int owner(int square) {
+        return board.has(firstDiscs, square) ? 0 : board.has(secondDiscs, square) ? 1 : -1;
+    }
+
+    /**
+     * Returns same state marked as published
+     */
+    GameState markPublished() {
+        return new GameState(board, firstDiscs, secondDiscs, turn, discCount, status, lastSquare, true);
+    }
+
+    /**
+     * Returns same state marked as not yet published... holds off the next move while a player is being
+     * brought back up to date ('Game.Player.resume()'), exactly as it is held off while a move is being sent out
+     */
+    GameState hold() {
+        return new GameState(board, firstDiscs, secondDiscs, turn, discCount, status, lastSquare, false);
+    }
+
+    /**
+     * Returns same board with the game ended early (no more moves accepted)
+     */
+    GameState abandon() {
+        return new GameState(board, firstDiscs, secondDiscs, turn, discCount, ABANDONED, lastSquare, true);
+    }
+
+    boolean isOver() {
+        return status != PLAYING;
+    }
+
+    boolean isFull() {
+        return discCount == board.squares;
+    }
+}
@@ -0,0 +1,615 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gateway Class: Front door for several game servers ('nodes')... clients connect here exactly as they would to a 'Server'
+ *
+ *      java Server --port 5001 --nio --gateway-secret S                (one per node... any machine)
+ *      java Gateway --port 4999 --gateway-secret S --nodes localhost:5001,localhost:5002
+ *      java Gateway --port 4999 --gateway-secret S --nodes nodes.txt   (one 'host:port' per line, re-read when changed)
+ *
+ * Players are paired here in arrival order and each pair given a game id ('Game.GATEWAY_ID_BIT' set), which is
+ * consistent-hashed onto a node ('HashRing'). Both players are passed on to that node ('MATCH <secret> <game id> <name>',
+ * the secret telling the node it came from its gateway rather than a client) and their bytes relayed both ways...
+ * the node runs the game as usual. Players asking for a board shape ('BOARD ...') are only paired with others asking for
+ * the same one. Spectators ('SPECTATE <game id>') go to the node holding that game, as do players coming back to a game
+ * ('RESUME <token> ...'... token starts with the game id)
+ *
+ * Draining a node -> add 'drain' after it in the nodes file ('localhost:5002 drain'). No new games are sent to it, games
+ * already there play on, and the gateway logs once it is empty and safe to take out of the file
+ *
+ * Relaying is done by a few selector event loops (one per core) as in 'NioServer'... a relayed client costs its two
+ * sockets, not threads, and bytes only sit in memory while the socket they are going to cannot take them
+ */
+public class Gateway {
+
+    private static final long RELOAD_MILLIS = 2000;  // how often nodes file is checked for changes
+    private static final int MAX_HANDSHAKE_BYTES = 2 + 64;  // longest handshake accepted from a client (length + name)
+    private static final int RELAY_BUFFER_SIZE = 16 * 1024;  // bytes copied per read (one buffer per event loop)
+
+    /**
+     * Handshake deadlines... clients that never send their name are closed instead of holding a connection forever
+     */
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Node Class: One game server and the clients currently relayed to it
+     */
+    static final class Node {
+        final String address;  // 'host:port'
+        final InetSocketAddress endpoint;  // looked up once (when membership is read), not per client
+        volatile boolean draining;
+        boolean drainedLogged;  // reloading thread only
+        final AtomicInteger clients = new AtomicInteger();
+
+        Node(String address) {
+            int colon = address.lastIndexOf(':');
+            if (colon == -1) {
+                throw new IllegalArgumentException("Node must be host:port -> " + address);
+            }
+            this.address = address;
+            this.endpoint = new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        }
+
+        @Override
+        public String toString() {
+            return address + (draining ? " (draining, " : " (") + clients.get() + " clients)";
+        }
+    }
+
+    /**
+     * Placement Class: Which node a game was sent to... kept while its players are connected so spectators
+     * (and the second player) find it even after membership has changed
+     */
+    private static final class Placement {
+        final Node node;
+        final AtomicInteger players = new AtomicInteger();
+
+        Placement(Node node) {
+            this.node = node;
+        }
+    }
+
+    private final String nodesOption;  // 'host:port,...' or path of nodes file
+    private final String secret;  // sent to nodes with every 'MATCH'
+    private volatile Map<String, Node> nodes = new LinkedHashMap<>();
+    private volatile HashRing<Node> ring = new HashRing<>(nodes);  // nodes taking new games (not draining)
+    private final Map<Long, Placement> placements = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(Game.GATEWAY_ID_BIT | System.currentTimeMillis() << 12);  // apart from nodes' own
+    private long lastModified = -1;
+
+    /**
+     * Waiting Class: Player waiting for a partner and the game id (and node) they were given
+     */
+    private static final class Waiting {
+        final long gameId;
+        final SocketChannel client;
+
+        Waiting(long gameId, SocketChannel client) {
+            this.gameId = gameId;
+            this.client = client;
+        }
+    }
+
+    private final Map<String, Waiting> waiting = new HashMap<>();  // per board asked for ("" -> node's own), guarded by 'this'
+    private volatile long newestGame = -1;
+
+    Gateway(String nodesOption, String secret) {
+        this.nodesOption = nodesOption;
+        this.secret = Protocol.gatewaySecret(secret);
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        int at = options.indexOf("--nodes");
+        int secretAt = options.indexOf("--gateway-secret");
+        if (at == -1 || at + 1 >= args.length || secretAt == -1 || secretAt + 1 >= args.length) {
+            System.out.println("Usage: Gateway [--port 4999] --gateway-secret S --nodes host:port,host:port | --nodes FILE");
+            return;
+        }
+        int portAt = options.indexOf("--port");
+        int port = portAt == -1 ? 4999 : Integer.parseInt(args[portAt + 1]);
+
+        new Gateway(args[at + 1], args[secretAt + 1]).run(port);
+    }
+
+    /**
+     * Accepting clients on given port until process ends, handing them out to the event loops in turn
+     */
+    void run(int port) throws IOException {
+        reload();
+        Thread reloader = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(RELOAD_MILLIS);
+                    reload();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    Log.info("Nodes Not Reloaded!", e);  // keep last good membership
+                }
+            }
+        }, "gateway-nodes");
+        reloader.setDaemon(true);
+        reloader.start();
+
+        RelayLoop[] loops = new RelayLoop[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new RelayLoop();
+            new Thread(loops[i], "gateway-loop-" + i).start();
+        }
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(port), 1024);
+            System.out.println("\nConnect Five Gateway is Running! (nodes: " + nodes.values() + ")");
+
+            int next = 0;
+            while (true) {
+                SocketChannel client = listener.accept();
+                client.configureBlocking(false);
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                RelayLoop loop = loops[next];
+                loop.execute(() -> loop.register(client));
+                next = (next + 1) % loops.length;
+            }
+        }
+    }
+
+    /**
+     * Reading membership (inline list or file) and rebuilding ring if it changed
+     * Nodes dropped from the list stop getting games straight away... their relayed clients are left to finish
+     */
+    private void reload() throws IOException {
+        List<String> lines;
+        Path file = Paths.get(nodesOption);
+        if (Files.isRegularFile(file)) {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                reportDrained();
+                return;
+            }
+            lastModified = modified;
+            lines = Files.readAllLines(file);
+        } else if (lastModified == -1) {
+            lastModified = 0;
+            lines = Arrays.asList(nodesOption.split(","));
+        } else {
+            reportDrained();
+            return;
+        }
+
+        Map<String, Node> next = new LinkedHashMap<>();
+        Map<String, Node> taking = new LinkedHashMap<>();
+        for (String line : lines) {
+            String[] fields = line.split("#", 2)[0].trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                continue;
+            }
+            Node node = nodes.getOrDefault(fields[0], new Node(fields[0]));  // same object kept so client counts carry over
+            node.draining = fields.length > 1 && fields[1].equalsIgnoreCase("drain");
+            node.drainedLogged &= node.draining;  // put back in service -> logged again if drained later
+            next.put(node.address, node);
+            if (!node.draining) {
+                taking.put(node.address, node);
+            }
+        }
+
+        nodes = next;
+        ring = new HashRing<>(taking);
+        Log.info("Nodes: " + next.values());
+        reportDrained();
+    }
+
+    /**
+     * Logging draining nodes that no longer have any clients (safe to remove)
+     */
+    private void reportDrained() {
+        for (Node node : nodes.values()) {
+            if (node.draining && !node.drainedLogged && node.clients.get() == 0) {
+                node.drainedLogged = true;
+                Log.info("Node Drained! (safe to remove) " + node.address);
+            }
+        }
+    }
+
+    /**
+     * Returns game id for a new player... first of a pair gets a new id (and node), second asking for the same board gets the same
+     */
+    private synchronized long pair(SocketChannel client, String board) {
+        Waiting first = waiting.remove(board);
+        if (first != null && first.client.isOpen()) {
+            Placement placement = placements.get(first.gameId);
+            if (placement != null) {
+                placement.players.incrementAndGet();
+            }
+            newestGame = first.gameId;
+            return first.gameId;
+        }
+
+        // first player (if any) left before anyone arrived... their relay's 'close()' releases their placement
+
+        long id = ids.incrementAndGet();
+        Node node = ring.node(id);
+        if (node != null) {
+            Placement placement = new Placement(node);
+            placement.players.incrementAndGet();
+            placements.put(id, placement);
+        }
+        waiting.put(board, new Waiting(id, client));
+        return id;
+    }
+
+    /**
+     * Returns 'BOARD <rows> <columns> <win length>' from front of a player's name, or "" if they did not ask for a board
+     */
+    private static String boardRequest(String name) {
+        if (name.startsWith(Protocol.SESSION_REQUEST + " ")) {
+            name = name.substring(Protocol.SESSION_REQUEST.length() + 1);  // comes before any board request
+        }
+        String[] fields = name.split(" ", 5);
+        return fields.length >= 4 && fields[0].equals(Protocol.BOARD_REQUEST)
+                ? String.join(" ", fields[0], fields[1], fields[2], fields[3])
+                : "";
+    }
+
+    /**
+     * Forgetting where a game is once its last player (or spectator) has gone
+     */
+    private void release(Placement placement) {
+        if (placement != null && placement.players.decrementAndGet() == 0) {
+            placements.values().remove(placement);
+        }
+    }
+
+    /**
+     * RelayLoop Class: One selector thread relaying for many clients (both sockets of a client on the same loop)
+     * Other threads hand work over through a concurrent queue and wake the selector up
+     */
+    private final class RelayLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(RELAY_BUFFER_SIZE);  // shared by all of this loop's relays
+
+        RelayLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        /**
+         * Running given task on this loop
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Taking on a newly accepted client (loop only)... it has until the handshake timeout to send its name
+         */
+        void register(SocketChannel channel) {
+            Relay relay = new Relay(this, channel);
+            try {
+                relay.client.key = channel.register(selector, SelectionKey.OP_READ, relay.client);
+                TIMEOUTS.schedule(() -> execute(relay::handshakeTimeout), Server.HANDSHAKE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                relay.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Side side = (Side) key.attachment();
+
+                        // a single bad client (or node) must never take the loop down
+                        try {
+                            if (key.isValid() && key.isConnectable()) {
+                                side.relay.connected();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                side.relay.read(side);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                side.relay.write(side);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            side.relay.failed(e);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.info("Event Loop Failed!", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Side Class: One socket of a relay and the bytes for it that it could not take yet
+     */
+    private static final class Side {
+        final Relay relay;
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer pending;  // null -> nothing waiting
+
+        Side(Relay relay, SocketChannel channel) {
+            this.relay = relay;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Relay Class: One client and (once its handshake has been read and a node picked) its connection to that node
+     *
+     *  -> handshake -> name read from client, node picked, connection to node opened (client not read meanwhile)
+     *  -> connected -> forwarded name (and anything the client sent after its name) written to node
+     *  -> relaying  -> bytes read from either side are written straight to the other... whatever that socket cannot take
+     *                  is kept and the side they came from is not read again until it has gone ('back-pressure')
+     *  -> either side closes -> anything still kept for the other is written, then both are closed
+     *
+     * Loop thread only
+     */
+    private final class Relay {
+        final RelayLoop loop;
+        final Side client;
+        Side server;  // null until a node is picked
+        ByteBuffer handshake = ByteBuffer.allocate(MAX_HANDSHAKE_BYTES);  // null once name has been read
+        boolean relaying;  // true once connected to node
+        boolean draining;  // one side has closed... only writing what is left
+        boolean closed;
+        Node node;
+        Placement placement;
+
+        Relay(RelayLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.client = new Side(this, channel);
+        }
+
+        /**
+         * Reading handshake, or relaying whatever has arrived on given side to the other
+         */
+        void read(Side from) throws IOException {
+            if (handshake != null) {
+                readHandshake();
+                return;
+            }
+
+            ByteBuffer buffer = loop.buffer;
+            buffer.clear();
+            if (from.channel.read(buffer) == -1) {
+                finish(from == client ? server : client);
+                return;
+            }
+            buffer.flip();
+
+            Side to = from == client ? server : client;
+            to.channel.write(buffer);  // straight through... each read is one or more whole messages in practice
+            if (buffer.hasRemaining()) {
+                to.pending = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+            }
+            updateInterest();
+        }
+
+        /**
+         * Writing bytes kept for given side now that its socket can take more
+         */
+        void write(Side to) throws IOException {
+            to.channel.write(to.pending);
+            if (to.pending.hasRemaining()) {
+                return;
+            }
+            to.pending = null;
+            if (draining) {
+                close();
+            } else {
+                updateInterest();
+            }
+        }
+
+        /**
+         * Connection to node is up... forwarded name goes first
+         */
+        void connected() throws IOException {
+            server.channel.finishConnect();
+            relaying = true;
+            write(server);
+        }
+
+        /**
+         * Picking node once whole name has arrived ('writeUTF' -> 2 byte length + modified UTF-8)
+         */
+        private void readHandshake() throws IOException {
+            if (client.channel.read(handshake) == -1) {
+                throw new EOFException("Client left before sending its name");
+            }
+            if (handshake.position() < 2) {
+                return;
+            }
+            int length = handshake.getShort(0) & 0xFFFF;
+            if (2 + length > MAX_HANDSHAKE_BYTES) {
+                throw new IOException("Name too long");
+            }
+            if (handshake.position() < 2 + length) {
+                return;
+            }
+
+            handshake.flip();
+            byte[] name = new byte[2 + length];
+            handshake.get(name);
+            ByteBuffer early = handshake;  // anything sent after the name (e.g. 'PROTOCOL BINARY')
+            handshake = null;
+            route(new DataInputStream(new ByteArrayInputStream(name)).readUTF(), early);
+        }
+
+        /**
+         * Picking client's node and connecting to it... name forwarded (then 'early' bytes) once connected
+         */
+        private void route(String name, ByteBuffer early) throws IOException {
+            String forwarded;
+            long gameId;
+            if (name.equals(Protocol.SPECTATE) || name.startsWith(Protocol.SPECTATE + " ")) {
+                gameId = spectatedGame(name.substring(Protocol.SPECTATE.length()).trim());
+                forwarded = Protocol.SPECTATE + " " + gameId;
+                placement = placements.get(gameId);
+                if (placement != null) {
+                    placement.players.incrementAndGet();  // released like a player's below
+                }
+            } else if (name.startsWith(Protocol.RESUME + " ")) {
+                gameId = Sessions.gameId(name.substring(Protocol.RESUME.length() + 1));
+                forwarded = name;  // node checks the token itself
+                placement = placements.get(gameId);
+                if (placement != null) {
+                    placement.players.incrementAndGet();
+                }
+            } else {
+                gameId = pair(client.channel, boardRequest(name));
+                forwarded = Protocol.MATCH + " " + secret + " " + gameId + " " + name;
+                placement = placements.get(gameId);
+            }
+
+            node = placement != null ? placement.node : ring.node(gameId);
+            if (node == null) {
+                throw new IOException("No nodes available");
+            }
+            node.clients.incrementAndGet();
+
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            new DataOutputStream(first).writeUTF(forwarded);
+            first.write(early.array(), early.position(), early.remaining());
+
+            SocketChannel channel = SocketChannel.open();
+            server = new Side(this, channel);
+            server.pending = ByteBuffer.wrap(first.toByteArray());
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            server.key = channel.register(loop.selector, SelectionKey.OP_CONNECT, server);
+            client.key.interestOps(0);  // rest of client's bytes wait in its socket until node is there
+            if (channel.connect(node.endpoint)) {
+                connected();
+            }
+        }
+
+        /**
+         * Returns id of game to watch (newest if none given)... -1 if it is not a number, which no game has, so the
+         * node answers it as it would any unknown game
+         */
+        private long spectatedGame(String id) {
+            try {
+                return id.isEmpty() ? newestGame : Long.parseLong(id);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * One side has closed... whatever is still kept for the other is written before both are closed
+         */
+        private void finish(Side to) {
+            if (to == null || to.pending == null) {
+                close();
+                return;
+            }
+            draining = true;
+            updateInterest();
+        }
+
+        /**
+         * Reading a side only while the other has nothing kept for it, writing a side only while it has something kept
+         */
+        private void updateInterest() {
+            if (closed) {
+                return;
+            }
+            client.key.interestOps(interest(client, !relaying ? handshake != null : server.pending == null));
+            if (relaying) {
+                server.key.interestOps(interest(server, client.pending == null));
+            }
+        }
+
+        private int interest(Side side, boolean reading) {
+            return (side.pending != null ? SelectionKey.OP_WRITE : 0) | (reading && !draining ? SelectionKey.OP_READ : 0);
+        }
+
+        /**
+         * Closing client if it still has not sent its name
+         */
+        void handshakeTimeout() {
+            if (handshake != null) {
+                close();
+            }
+        }
+
+        /**
+         * Either socket failed... logged if the client was never routed, otherwise it just went
+         */
+        void failed(Exception e) {
+            if (!relaying) {
+                Log.info("Client Not Routed!", e);
+            }
+            close();
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeQuietly(client.channel);
+            if (server != null) {
+                closeQuietly(server.channel);
+            }
+            if (node != null) {
+                node.clients.decrementAndGet();
+            }
+            release(placement);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();  // also cancels its selection key
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+}
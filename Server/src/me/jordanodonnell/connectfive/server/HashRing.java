@@ -0,0 +1,66 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HashRing Class: Consistent hashing of game ids onto nodes (used by 'Gateway')
+ * Every node is placed on the ring many times over ('virtual nodes') so games spread evenly, and adding or removing
+ * a node only moves the games that hashed to it... immutable, a new ring is built whenever membership changes
+ */
+final class HashRing<T> {
+
+    private static final int VIRTUAL_NODES = 160;  // points on ring per node
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * Building ring from nodes keyed by a stable name (e.g. 'localhost:5001')
+     */
+    HashRing(Map<String, T> nodes) {
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            long seed = hash(node.getKey());
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(mix(seed + i), node.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns node owning given game id, or null if the ring is empty
+     */
+    T node(long gameId) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> owner = ring.ceilingEntry(mix(gameId));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();  // past last point -> wrap round
+    }
+
+    boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * 64-bit FNV-1a of node name
+     */
+    private static long hash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Scrambling bits so consecutive ids land far apart on the ring (SplitMix64 finaliser)
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
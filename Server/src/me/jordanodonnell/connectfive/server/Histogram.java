@@ -0,0 +1,93 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram Class: Lock-free histogram of durations in nanoseconds (same log-linear buckets as the client's 'LatencyHistogram')
+ * 16 buckets per power of two (~6% precision)... recording is one atomic increment plus an add, no locks or allocation
+ */
+final class Histogram {
+
+    private static final int SUB_BUCKETS = 16;  // buckets per power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int BUCKETS = 2 * SUB_BUCKETS + 40 * SUB_BUCKETS;  // covers up to ~2^44 nanoseconds (~5 hours)
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Recording one duration (negative values count as 0)
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+    }
+
+    /**
+     * Recording time since given 'System.nanoTime()'
+     */
+    void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns duration at given percentile (e.g. 0.99) as the upper edge of its bucket, or 0 if nothing recorded
+     */
+    long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperEdge(i);
+            }
+        }
+        return upperEdge(BUCKETS - 1);
+    }
+
+    /**
+     * Returns number of durations recorded
+     */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns total of all durations recorded
+     */
+    long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Values below 32 get a bucket each... above that the top 5 bits of the value pick the bucket
+     */
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1);
+        int index = 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperEdge(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,335 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Journal Class: Append-only record of every game started and every move accepted ('--journal DIR')
+ *
+ * Records are fixed size (16 bytes) and written straight into memory-mapped segment files ('journal-000001.log'...)
+ *  -> a move costs a slot reservation (one atomic add) and a few stores... no lock, no system call
+ *  -> segment full -> next one is created and mapped ('rolled')
+ *  -> a background thread forces segments to disk every few milliseconds ('group commit') instead of once per move
+ *
+ * Mapped pages belong to the OS so records survive the server process dying... only the last sync interval
+ * can be lost if the machine itself goes down
+ *
+ * Record -> type (1 byte) | seat (1) | board index (1) | status after move (1) | game id (8) | checksum (4)
+ *  -> board index past 255 -> its top bits are kept in the status byte above the status itself (bits 2-7)
+ *  -> START -> seat, board index, status bytes hold the board's rows, columns and win length instead (all 0 -> 6x9)
+ *  -> END -> game abandoned before a result (seat -> player who left, 2 if both went quiet... see 'Sessions')
+ */
+final class Journal implements Closeable {
+
+    static final int RECORD_BYTES = 16;
+    static final int START = 1;  // game created (seat, square, status -> board shape)
+    static final int MOVE = 2;  // move accepted by 'possibleMove()'
+    static final int END = 3;  // game abandoned (seat -> who left)
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int CHECKSUM_SEED = 0x6A6F7572;  // 'jour'
+
+    /**
+     * Segment Class: One mapped journal file... writers reserve slots in it with an atomic add
+     */
+    private static final class Segment {
+        final int number;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger next = new AtomicInteger();
+        int syncs;  // times forced since being retired (sync thread only)
+
+        Segment(Path directory, int number, int size) throws IOException {
+            this.number = number;
+            channel = FileChannel.open(directory.resolve(fileName(number)),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Returns offset of a free record slot, or -1 if segment is full
+         */
+        int reserve() {
+            int at = next.getAndAdd(RECORD_BYTES);
+            return at + RECORD_BYTES <= buffer.capacity() ? at : -1;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private volatile Segment current;
+    private volatile boolean failed;  // journal could not roll (e.g. disk full)... moves carry on unrecorded
+
+    /**
+     * Segments rolled away from but not yet forced... kept for one more sync as a late writer may still be filling a slot
+     */
+    private final List<Segment> retired = new CopyOnWriteArrayList<>();
+
+    private final Thread syncer;
+    private volatile boolean closed;
+
+    /**
+     * Opening journal in given directory... always starts a new segment after any already there
+     */
+    Journal(Path directory, int segmentBytes, long syncMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+        Files.createDirectories(directory);
+
+        List<Path> existing = segments(directory);
+        int last = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+        current = new Segment(directory, last + 1, this.segmentBytes);
+
+        syncer = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Thread.sleep(syncMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sync();
+            }
+        }, "journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Opening journal in given directory when the server starts... last run's records are read back first
+     *  -> games it left unfinished are recorded as abandoned (seat 2)... their players' sessions only lived in
+     *     memory, so nobody can come back to them
+     *  -> game ids seeded past every one the server itself gave out (gateway ids are the gateway's own)
+     */
+    static Journal reopen(Path directory, int segmentBytes, long syncMillis) throws IOException {
+        long[] highest = {0};
+        replay(directory, (type, gameId, seat, square, status) -> {
+            if ((gameId & Game.GATEWAY_ID_BIT) == 0) {
+                highest[0] = Math.max(highest[0], gameId);
+            }
+        });
+        Game.seedIds(highest[0]);
+
+        Map<Long, GameState> unfinished = recover(directory);
+        Journal journal = new Journal(directory, segmentBytes, syncMillis);
+        for (long gameId : unfinished.keySet()) {
+            journal.gameAbandoned(gameId, 2);
+        }
+        if (!unfinished.isEmpty()) {
+            Log.info("Unfinished Games Abandoned!", unfinished.size());
+        }
+        return journal;
+    }
+
+    /**
+     * Recording a new game on given board
+     */
+    void gameStarted(long gameId, Board board) {
+        append(START, gameId, board.rows, board.columns, board.winLength);
+    }
+
+    /**
+     * Recording an accepted move... safe to call from any thread
+     */
+    void moved(long gameId, int seat, int square, int status) {
+        append(MOVE, gameId, seat, square & 0xFF, status | (square >>> 8) << 2);
+    }
+
+    /**
+     * Recording a game ended early... given seat left (2 -> neither player came back or moved in time)
+     */
+    void gameAbandoned(long gameId, int seat) {
+        append(END, gameId, seat, 0, GameState.ABANDONED);
+    }
+
+    private void append(int type, long gameId, int seat, int square, int status) {
+        while (!failed) {
+            Segment segment = current;
+            int at = segment.reserve();
+            if (at == -1) {
+                roll(segment);
+                continue;
+            }
+
+            int header = type << 24 | seat << 16 | square << 8 | status;
+            ByteBuffer buffer = segment.buffer;
+            buffer.putLong(at + 4, gameId);
+            buffer.putInt(at + 12, checksum(header, gameId));
+            buffer.putInt(at, header);  // type byte written last... a zero type marks a slot never filled
+            return;
+        }
+    }
+
+    /**
+     * Replacing full segment with a new one (only the first writer to find it full does the work)
+     */
+    private synchronized void roll(Segment full) {
+        if (current != full || failed) {
+            return;
+        }
+        try {
+            current = new Segment(directory, full.number + 1, segmentBytes);
+            retired.add(full);
+        } catch (IOException e) {
+            failed = true;
+            Log.info("Journal Disabled!", e);
+        }
+    }
+
+    /**
+     * Group commit -> forcing everything written since last sync to disk in one go
+     */
+    private void sync() {
+        synchronized (retired) {  // sync thread and 'close()'... never held by writers
+            List<Segment> done = new ArrayList<>(retired);
+            try {
+                current.buffer.force();
+                for (Segment segment : done) {
+                    segment.buffer.force();
+                }
+            } catch (RuntimeException e) {
+                Log.info("Journal Sync Failed!", e);
+            }
+            for (Segment segment : done) {
+                if (++segment.syncs == 2 && retired.remove(segment)) {
+                    closeQuietly(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forcing outstanding records to disk and closing every segment
+     */
+    @Override
+    public void close() {
+        closed = true;
+        syncer.interrupt();
+        sync();
+        synchronized (retired) {
+            for (Segment segment : retired) {
+                closeQuietly(segment);
+            }
+            closeQuietly(current);
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.buffer.force();
+            segment.channel.close();
+        } catch (IOException e) {
+            Log.info("Journal Close Failed!", e);
+        }
+    }
+
+    /**
+     * Visitor Interface: Receives journal records in the order they were written (per game)
+     * START records pass the board's rows, columns and win length as seat, square and status (see 'board()')
+     */
+    interface Visitor {
+        void record(int type, long gameId, int seat, int square, int status);
+    }
+
+    /**
+     * Returns board of a START record from its rows, columns and win length (journals written before boards
+     * could change shape have 0s -> standard board)
+     */
+    static Board board(int rows, int columns, int winLength) {
+        Board board = rows == 0 ? Board.STANDARD : Board.of(rows, columns, winLength);
+        return board == null ? Board.STANDARD : board;
+    }
+
+    /**
+     * Reading every record in given directory, oldest segment first
+     * Slots never filled (server died with them reserved) or torn (checksum does not match) are skipped
+     */
+    static void replay(Path directory, Visitor visitor) throws IOException {
+        for (Path path : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                for (int at = 0; at + RECORD_BYTES <= buffer.capacity(); at += RECORD_BYTES) {
+                    int header = buffer.getInt(at);
+                    if (header == 0) {
+                        continue;
+                    }
+                    long gameId = buffer.getLong(at + 4);
+                    if (buffer.getInt(at + 12) != checksum(header, gameId)) {
+                        continue;
+                    }
+                    int type = header >>> 24;
+                    int square = header >>> 8 & 0xFF;
+                    int status = header & 0xFF;
+                    if (type == MOVE) {
+                        square |= status >>> 2 << 8;
+                        status &= 0x3;
+                    }
+                    visitor.record(type, gameId, header >>> 16 & 0xFF, square, status);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilding the state of every game in given directory that had not finished (e.g. when the server died)
+     */
+    static Map<Long, GameState> recover(Path directory) throws IOException {
+        Map<Long, GameState> games = new HashMap<>();
+        replay(directory, (type, gameId, seat, square, status) -> {
+            if (type == START) {
+                games.put(gameId, GameState.start(board(seat, square, status)));
+            } else if (type == END) {
+                games.remove(gameId);  // abandoned -> nothing to recover
+            } else if (type == MOVE) {
+                GameState state = games.get(gameId);
+                GameState next = state == null || state.turn != seat ? null : state.play(square);
+                if (next == null || next.isOver()) {
+                    games.remove(gameId);  // finished (or unknown/inconsistent) -> nothing to recover
+                } else {
+                    games.put(gameId, next.markPublished());
+                }
+            }
+        });
+        return games;
+    }
+
+    private static int checksum(int header, long gameId) {
+        long mixed = (gameId ^ (long) header << 32 ^ CHECKSUM_SEED) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) | 1;  // never zero
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);  // zero-padded numbers -> name order is write order
+        return paths;
+    }
+
+    private static String fileName(int number) {
+        return String.format(PREFIX + "%06d" + SUFFIX, number);
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,132 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JournalReplay Class: Reads a game journal ('--journal DIR') back
+ *
+ *      java JournalReplay DIR                  (totals... games, moves, results, replay speed)
+ *      java JournalReplay DIR --games          (one line per game: id, result, moves played)
+ *      java JournalReplay DIR --game ID        (every move of one game and its final board)
+ *      java JournalReplay DIR --in-progress    (boards of games that had not finished e.g. when the server died)
+ *
+ * Every move is replayed through 'GameState.play()' so the states rebuilt are exactly those the server held
+ */
+public class JournalReplay {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: JournalReplay DIR [--games | --game ID | --in-progress]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        List<String> options = Arrays.asList(args);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+
+        if (options.contains("--in-progress")) {
+            Map<Long, GameState> games = Journal.recover(directory);
+            for (Map.Entry<Long, GameState> game : games.entrySet()) {
+                out.println("Game " + game.getKey() + " (" + game.getValue().discCount + " moves, "
+                        + (game.getValue().turn == 0 ? "BLUE" : "RED") + " to move)");
+                printBoard(out, game.getValue());
+            }
+            out.println(games.size() + " games in progress");
+            out.flush();
+            return;
+        }
+
+        int at = options.indexOf("--game");
+        long only = at == -1 || at + 1 >= args.length ? -1 : Long.parseLong(args[at + 1]);
+        boolean perGame = options.contains("--games");
+
+        Map<Long, GameState> games = new HashMap<>();
+        long[] totals = new long[6];  // records, moves, won, tied, inconsistent, abandoned
+        long start = System.nanoTime();
+
+        Journal.replay(directory, (type, gameId, seat, square, status) -> {
+            totals[0]++;
+            if (type == Journal.START) {
+                games.put(gameId, GameState.start(Journal.board(seat, square, status)));
+                return;
+            }
+            if (type == Journal.END) {
+                GameState abandoned = games.get(gameId);
+                if (abandoned != null) {
+                    totals[5]++;
+                    if (perGame) {
+                        out.println(gameId + " abandoned" + (seat < 2 ? " by " + (seat == 0 ? "BLUE" : "RED") : "") + " " + abandoned.discCount);
+                    }
+                    if (gameId == only) {
+                        games.put(gameId, abandoned.abandon());
+                    } else {
+                        games.remove(gameId);
+                    }
+                }
+                return;
+            }
+
+            GameState state = games.get(gameId);
+            GameState next = state == null || state.turn != seat ? null : state.play(square);
+            if (next == null) {
+                totals[4]++;  // move that does not follow from the journal so far
+                return;
+            }
+            next = next.markPublished();
+            totals[1]++;
+
+            if (gameId == only) {
+                out.println("Move " + next.discCount + ": " + (seat == 0 ? "BLUE" : "RED") + " -> " + square);
+            }
+            if (next.isOver()) {
+                totals[next.status == GameState.WON ? 2 : 3]++;
+                if (perGame) {
+                    out.println(gameId + " " + (next.status == GameState.WON ? (seat == 0 ? "BLUE" : "RED") + " won" : "tie")
+                            + " " + next.discCount);
+                }
+                if (gameId != only) {
+                    games.remove(gameId);  // finished... no need to keep it
+                    return;
+                }
+            }
+            games.put(gameId, next);
+        });
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (only != -1) {
+            GameState state = games.get(only);
+            if (state == null) {
+                out.println("Game " + only + " not found");
+            } else {
+                printBoard(out, state);
+            }
+        }
+        out.printf("Replayed %d records in %.2fs (%.0f records/s): moves=%d won=%d tied=%d abandoned=%d inProgress=%d skipped=%d%n",
+                totals[0], seconds, totals[0] / Math.max(seconds, 1e-9), totals[1], totals[2], totals[3], totals[5],
+                games.size() - (only != -1 && games.containsKey(only) && games.get(only).isOver() ? 1 : 0), totals[4]);
+        out.flush();
+    }
+
+    /**
+     * Printing board top row first... 'B' = BLUE (player 1), 'R' = RED (player 2), '.' = empty
+     */
+    private static void printBoard(PrintWriter out, GameState state) {
+        Board board = state.board;
+        for (int row = 0; row < board.rows; row++) {
+            StringBuilder line = new StringBuilder();
+            for (int column = 0; column < board.columns; column++) {
+                int owner = state.owner(row * board.columns + column);
+                line.append(owner == 0 ? 'B' : owner == 1 ? 'R' : '.');
+            }
+            out.println(line);
+        }
+    }
+}
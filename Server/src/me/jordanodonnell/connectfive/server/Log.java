@@ -0,0 +1,141 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log Class: Asynchronous server log... callers never wait on the console
+ *
+ * Entries go into a fixed ring of preallocated slots (message, detail object, number) and a background thread
+ * formats and prints them. Logging allocates nothing on the caller's side as long as the message is a constant and
+ * the detail an object that already exists (e.g. the exception caught)... detail only turned into text by the log thread
+ * Ring full (console cannot keep up) -> entry dropped and counted ('log_dropped_total') rather than blocking
+ */
+final class Log {
+
+    private static final int CAPACITY = 4096;  // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final String[] MESSAGES = new String[CAPACITY];
+    private static final Object[] DETAILS = new Object[CAPACITY];
+    private static final long[] VALUES = new long[CAPACITY];
+    private static final long[] TIMES = new long[CAPACITY];
+    private static final AtomicLongArray PUBLISHED = new AtomicLongArray(CAPACITY);  // sequence + 1 once slot is filled in
+
+    private static final AtomicLong CLAIMED = new AtomicLong();  // next sequence to hand out
+    private static volatile long consumed;  // next sequence log thread will print
+    private static final LongAdder DROPPED = new LongAdder();
+
+    static {
+        Thread thread = new Thread(Log::drain, "log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Log() {
+    }
+
+    static void info(String message) {
+        append(message, null, NO_VALUE);
+    }
+
+    static void info(String message, Object detail) {
+        append(message, detail, NO_VALUE);
+    }
+
+    static void info(String message, long value) {
+        append(message, null, value);
+    }
+
+    /**
+     * Returns number of entries dropped because the ring was full
+     */
+    static long dropped() {
+        return DROPPED.sum();
+    }
+
+    private static void append(String message, Object detail, long value) {
+        long sequence;
+        do {
+            sequence = CLAIMED.get();
+            if (sequence - consumed >= CAPACITY) {
+                DROPPED.increment();
+                return;
+            }
+        } while (!CLAIMED.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & MASK;
+        MESSAGES[slot] = message;
+        DETAILS[slot] = detail;
+        VALUES[slot] = value;
+        TIMES[slot] = System.currentTimeMillis();
+        PUBLISHED.set(slot, sequence + 1);  // volatile write... slot contents visible to log thread from here
+    }
+
+    /**
+     * Executing run method of log thread -> prints entries in order, sleeping briefly whenever the ring is empty
+     */
+    private static void drain() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        StringBuilder line = new StringBuilder(256);
+
+        while (true) {
+            long next = consumed;
+            int slot = (int) next & MASK;
+            if (PUBLISHED.get(slot) != next + 1) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    // console gone... keep draining so callers are never blocked
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            line.setLength(0);
+            appendTime(line, TIMES[slot]);
+            line.append(' ').append(MESSAGES[slot]);
+            if (DETAILS[slot] != null) {
+                line.append(' ').append(DETAILS[slot]);
+            }
+            if (VALUES[slot] != NO_VALUE) {
+                line.append(' ').append(VALUES[slot]);
+            }
+            line.append('\n');
+            DETAILS[slot] = null;  // let detail be collected
+            consumed = next + 1;  // slot free for reuse
+
+            try {
+                out.append(line);
+            } catch (IOException e) {
+                // as above
+            }
+        }
+    }
+
+    /**
+     * Appending UTC time of day as 'HH:mm:ss.SSS'
+     */
+    private static void appendTime(StringBuilder line, long millis) {
+        long ofDay = millis % TimeUnit.DAYS.toMillis(1);
+        twoDigits(line, ofDay / 3_600_000).append(':');
+        twoDigits(line, ofDay / 60_000 % 60).append(':');
+        twoDigits(line, ofDay / 1000 % 60).append('.');
+        long fraction = ofDay % 1000;
+        line.append(fraction < 100 ? "0" : "").append(fraction < 10 ? "0" : "").append(fraction);
+    }
+
+    private static StringBuilder twoDigits(StringBuilder line, long value) {
+        return line.append(value < 10 ? "0" : "").append(value);
+    }
+}
@@ -0,0 +1,395 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Matchmaker Class: Pairs players into games once their handshake has completed
+ * Connections are accepted and handshaken elsewhere (concurrently)... ready players are only added to a lock-free queue here
+ * and a single pairing thread takes them off two at a time, so a slow client can never hold up anyone else being matched
+ * With an 'AiEngine' a player left waiting alone (no one else in the queue) is given a computer opponent instead
+ * Games in progress are kept by id so spectators ('SPECTATE <game id>') can find them
+ * Players only meet others on the same board shape ('BOARD <rows> <columns> <win length> <name>', else the server's own)
+ * Players routed here by a 'Gateway' already have a game id ('MATCH <secret> <game id> <name>')... they are paired with
+ * the other player given the same id instead of whoever is next in the queue. Only honoured with the secret the server
+ * was started with ('--gateway-secret'), so a client connecting directly cannot pick (or join) a game by its id
+ * Nobody else can ever take that other player's place, so if they have not arrived within 'MATCH_WAIT_NANOS' the one
+ * waiting is sent 'GOODBYE' and disconnected rather than left waiting for good
+ * Players asking for a session ('SESSION <name>') are sent a token after 'WELCOME' and can take their seat back
+ * with 'RESUME <token> <discs seen>' if they drop mid-game (see 'Sessions')
+ */
+class Matchmaker implements Runnable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);  // longest pairing thread sleeps between checks
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);  // how often metrics are printed
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);  // how often finished games are forgotten
+    private static final long AI_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);  // time alone in queue before computer opponent steps in
+    private static final long MATCH_WAIT_NANOS = TimeUnit.SECONDS.toNanos(5);  // time a gateway player waits for the other player with their id
+
+    /**
+     * Ticket Class: Player who has completed their handshake and is waiting for an opponent
+     */
+    static final class Ticket {
+        final Connection connection;
+        final String name;
+        final Board board;  // shape asked for (only paired with players wanting the same)
+        final String token;  // session token (null -> player did not ask for one)
+        final long enqueuedAt = System.nanoTime();
+
+        Ticket(Connection connection, String name, Board board, String token) {
+            this.connection = connection;
+            this.name = name;
+            this.board = board;
+            this.token = token;
+        }
+    }
+
+    private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Game> live = new ConcurrentHashMap<>();  // games in progress by id
+    private volatile long newestGame = -1;  // id of game started last (bare 'SPECTATE' watches it)
+    private final Map<Long, Ticket> matches = new ConcurrentHashMap<>();  // gateway players waiting for partner with same id
+    private final Map<Board, Ticket> waiting = new HashMap<>();  // player waiting for an opponent per board shape (pairing thread only)
+    private final AiEngine ai;  // null -> players only ever matched with each other
+    private final Journal journal;  // null -> games not recorded
+    private final Board board;  // board for players who do not ask for one
+    private final Sessions sessions;  // resumable seats, idle and abandoned games
+    private final byte[] gatewaySecret;  // null -> no gateway in front... 'MATCH' never honoured
+    private volatile Thread worker;
+
+    /**
+     * Metrics -> players waiting, players matched and time from handshake to match
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong aiGames = new AtomicLong();
+
+    /**
+     * Creating matchmaker... 'ai' (no computer opponents), 'journal' (games not recorded) and 'gatewaySecret'
+     * (no gateway) may be null
+     */
+    Matchmaker(AiEngine ai, Journal journal, Board board, Sessions sessions, String gatewaySecret) {
+        this.ai = ai;
+        this.journal = journal;
+        this.board = board;
+        this.sessions = sessions;
+        this.gatewaySecret = gatewaySecret == null ? null : gatewaySecret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starting pairing thread
+     */
+    void start() {
+        Thread thread = new Thread(this, "matchmaker");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Adding player (handshake complete) to queue... player welcomed straight away so their client knows it is connected
+     * Safe to call from any thread
+     */
+    void enqueue(Connection connection, String name) {
+        if (name.equals(Protocol.SPECTATE) || name.startsWith(Protocol.SPECTATE + " ")) {
+            spectate(connection, name.substring(Protocol.SPECTATE.length()).trim());
+            return;
+        }
+        if (name.startsWith(Protocol.RESUME + " ")) {
+            sessions.resume(connection, name.substring(Protocol.RESUME.length() + 1));
+            return;
+        }
+
+        long matchId = -1;
+        if (name.startsWith(Protocol.MATCH + " ")) {
+            String[] parts = name.split(" ", 4);
+            try {
+                matchId = fromGateway(parts[1]) ? Long.parseLong(parts[2]) : -1;
+                name = parts.length == 4 ? parts[3] : "";
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                matchId = -1;
+            }
+            if (matchId == -1) {
+                Log.info("Match Refused!");  // not from our gateway
+                connection.send(Protocol.MESSAGE, "Match Not Allowed!");
+                connection.flush();
+                connection.close();
+                return;
+            }
+        }
+
+        boolean resumable = name.startsWith(Protocol.SESSION_REQUEST + " ");
+        if (resumable) {
+            name = name.substring(Protocol.SESSION_REQUEST.length() + 1);
+        }
+
+        Board shape = board;
+        if (name.startsWith(Protocol.BOARD_REQUEST + " ")) {
+            String[] fields = name.split(" ", 5);
+            shape = Board.parse(fields);
+            if (shape == null) {
+                connection.send(Protocol.MESSAGE, "Board Not Supported! (" + Board.MIN_SIDE + "-" + Board.MAX_SIDE + " rows and columns, "
+                        + Board.MIN_WIN_LENGTH + "-" + Board.MAX_WIN_LENGTH + " in a row)");
+                connection.flush();
+                connection.close();
+                return;
+            }
+            name = fields.length == 5 ? fields[4] : "";
+        }
+
+        connection.send(Protocol.WELCOME, name);
+        if (shape != Board.STANDARD) {
+            connection.send(shape.frame());  // client draws standard board unless told otherwise
+        }
+        String token = resumable ? sessions.newToken(matchId) : null;
+        if (token != null) {
+            connection.send(Protocol.SESSION, token);
+        }
+        connection.send(Protocol.MESSAGE, "Waiting for Opponent!");
+        connection.flush();
+
+        Ticket ticket = new Ticket(connection, name, shape, token);
+        queueDepth.incrementAndGet();
+        if (matchId != -1) {
+            match(matchId, ticket);
+            return;
+        }
+        queue.add(ticket);
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Returns true if given secret is the gateway's (compared in constant time)
+     */
+    private boolean fromGateway(String secret) {
+        return gatewaySecret != null && MessageDigest.isEqual(gatewaySecret, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Pairing gateway player with the other player given same game id (or leaving them waiting for that player)
+     */
+    private void match(long gameId, Ticket ticket) {
+        Ticket[] partner = new Ticket[1];
+        matches.compute(gameId, (id, waiting) -> {
+            if (waiting == null || !waiting.connection.isOpen()) {
+                if (waiting != null) {
+                    queueDepth.decrementAndGet();  // partner left before we arrived... we wait instead
+                }
+                return ticket;
+            }
+            partner[0] = waiting;
+            return null;
+        });
+
+        if (partner[0] != null) {
+            pair(partner[0], ticket, new Game(gameId, ticket.board, journal));
+        }
+    }
+
+    /**
+     * Adding spectator to game with given id (or game started last if no id given... looked up, not searched for)
+     */
+    private void spectate(Connection connection, String gameId) {
+        Game game;
+        try {
+            game = live.get(gameId.isEmpty() ? newestGame : Long.parseLong(gameId));
+        } catch (NumberFormatException e) {
+            game = null;
+        }
+
+        if (game == null) {
+            connection.send(Protocol.MESSAGE, "No Game to Spectate!");
+            connection.flush();
+            connection.open(null);  // client leaves when it likes
+            return;
+        }
+        game.watch(connection);
+    }
+
+    /**
+     * Forgetting games that are over (and waiting players who have left), and turning away gateway players whose
+     * opponent is overdue
+     * A game a player has left stays until 'Sessions' ends it... they may still come back to it
+     */
+    private void sweep() {
+        for (Iterator<Ticket> iterator = waiting.values().iterator(); iterator.hasNext(); ) {
+            if (!iterator.next().connection.isOpen()) {
+                iterator.remove();
+                queueDepth.decrementAndGet();
+            }
+        }
+
+        live.values().removeIf(game -> game.state().isOver());
+
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Ticket> waiting : matches.entrySet()) {
+            Ticket ticket = waiting.getValue();
+            boolean open = ticket.connection.isOpen();
+            if ((!open || now - ticket.enqueuedAt >= MATCH_WAIT_NANOS) && matches.remove(waiting.getKey(), ticket)) {
+                queueDepth.decrementAndGet();
+                if (open) {
+                    noOpponent(ticket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turning away gateway player whose opponent never arrived (left the gateway, or could not reach this server)
+     * Told why and disconnected once the client has had time to read it... their token was never seated, nothing to resume
+     */
+    private void noOpponent(Ticket ticket) {
+        Log.info("Opponent Never Arrived!", ticket.name);
+        ticket.connection.send(Protocol.GOODBYE, Protocol.goodbye(Protocol.NO_OPPONENT));
+        ticket.connection.flush();
+        sessions.closeLater(ticket.connection);
+    }
+
+    /**
+     * Returns number of games in progress
+     */
+    int liveGames() {
+        return live.size();
+    }
+
+    /**
+     * Executing run method of pairing thread
+     * Takes players off queue in arrival order... player 1 is 'BLUE' and moves first, player 2 is 'RED'
+     * Players who disconnected while waiting are skipped
+     */
+    @Override
+    public void run() {
+        long lastReport = System.nanoTime();
+        long lastSweep = lastReport;
+
+        while (true) {
+            Ticket next = queue.poll();
+
+            if (next == null) {
+                Ticket lone = waiting.get(Board.STANDARD);  // computer only plays the standard board
+                if (ai != null && lone != null && System.nanoTime() - lone.enqueuedAt >= AI_WAIT_NANOS) {
+                    waiting.remove(Board.STANDARD);
+                    if (lone.connection.isOpen()) {
+                        pairWithAi(lone);
+                    } else {
+                        queueDepth.decrementAndGet();
+                    }
+                    continue;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } else if (!next.connection.isOpen()) {
+                queueDepth.decrementAndGet();
+            } else {
+                Ticket first = waiting.remove(next.board);
+                if (first == null || !first.connection.isOpen()) {
+                    if (first != null) {
+                        queueDepth.decrementAndGet();
+                    }
+                    waiting.put(next.board, next);
+                } else {
+                    pair(first, next, new Game(next.board, journal));
+                }
+            }
+
+            if (System.nanoTime() - lastSweep >= SWEEP_INTERVAL_NANOS) {
+                lastSweep = System.nanoTime();
+                sweep();
+            }
+            if (System.nanoTime() - lastReport >= REPORT_INTERVAL_NANOS) {
+                lastReport = System.nanoTime();
+                if (matched.get() > 0 || queueDepth.get() > 0) {
+                    Log.info(stats());
+                    if (aiGames.get() > 0) {
+                        Log.info(ai.stats());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Starting given new game for two waiting players
+     * Called on pairing thread, or on handshake thread of second gateway player
+     */
+    private void pair(Ticket first, Ticket second, Game game) {
+        Game.Player player1 = game.new Player(first.connection, first.name, "BLUE");
+        Game.Player player2 = game.new Player(second.connection, second.name, "RED");
+        player1.token = first.token;
+        player2.token = second.token;
+
+        player1.setOpponent(player2);  // set player 1's opponent as player 2
+        player2.setOpponent(player1);  // set player 2's opponent as player 1
+        game.firstPlayer = player1;  // player 1 moves first
+        sessions.started(game);  // before either connection is opened... a drop from then on parks or ends the game
+        live.put(game.id, game);
+        newestGame = game.id;
+        Metrics.GAMES_STARTED.increment();
+
+        long now = System.nanoTime();
+        recordWait(now - first.enqueuedAt);
+        recordWait(now - second.enqueuedAt);
+        queueDepth.addAndGet(-2);
+
+        player2.start();  // player 2 told first so player 1's first move never reaches them before 'All Players Connected!'
+        player1.start();
+    }
+
+    /**
+     * Creating a new game for a lone waiting player against the computer... player moves first ('BLUE')
+     */
+    private void pairWithAi(Ticket first) {
+        Game game = new Game(Board.STANDARD, journal);
+        Game.Player player1 = game.new Player(first.connection, first.name, "BLUE");
+        Game.Player computer = game.new Player(new AiConnection(ai), "Computer", "RED");
+        player1.token = first.token;
+
+        player1.setOpponent(computer);
+        computer.setOpponent(player1);
+        game.firstPlayer = player1;
+        sessions.started(game);
+        live.put(game.id, game);
+        newestGame = game.id;
+        Metrics.GAMES_STARTED.increment();
+
+        recordWait(System.nanoTime() - first.enqueuedAt);
+        queueDepth.decrementAndGet();
+        aiGames.incrementAndGet();
+
+        computer.start();
+        player1.start();
+    }
+
+    private void recordWait(long waitNanos) {
+        matched.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Returns number of players currently waiting for an opponent
+     */
+    int queueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns summary of matchmaking metrics e.g. 'Matchmaking: waiting=1 matched=200 aiGames=3 avgWait=3.2ms maxWait=41.0ms'
+     */
+    String stats() {
+        long count = matched.get();
+        double averageMillis = count == 0 ? 0 : totalWaitNanos.get() / (count * 1e6);
+        return String.format("Matchmaking: waiting=%d matched=%d aiGames=%d avgWait=%.1fms maxWait=%.1fms",
+                queueDepth.get(), count, aiGames.get(), averageMillis, maxWaitNanos.get() / 1e6);
+    }
+}
@@ -0,0 +1,128 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics Class: Counters, latency histograms and gauges for the whole server
+ * Recorded straight from the hot paths (accept, handshake, moves, win checks, socket writes) so everything is lock-free...
+ * a counter is one 'LongAdder' add, a histogram one atomic increment. Read by 'MetricsEndpoint' (JMX and HTTP)
+ */
+final class Metrics {
+
+    /**
+     * Counters (totals since start)
+     */
+    static final LongAdder CONNECTIONS_ACCEPTED = new LongAdder();
+    static final LongAdder HANDSHAKES = new LongAdder();  // names read in
+    static final LongAdder HANDSHAKE_FAILURES = new LongAdder();  // disconnected or timed out before sending a name
+    static final LongAdder GAMES_STARTED = new LongAdder();
+    static final LongAdder MOVES = new LongAdder();  // accepted by 'possibleMove()'
+    static final LongAdder MOVES_REJECTED = new LongAdder();  // out of turn, column full, game over...
+    static final LongAdder SOCKET_WRITES = new LongAdder();
+    static final LongAdder BYTES_WRITTEN = new LongAdder();
+    static final LongAdder SLOW_CLIENTS_DROPPED = new LongAdder();  // too much queued for a client that is not reading
+    static final LongAdder CLIENTS_DISCONNECTED = new LongAdder();  // misbehaving... flooding rejected commands, command too long
+    static final LongAdder SESSIONS_PARKED = new LongAdder();  // player with a session dropped mid-game... seat held for them
+    static final LongAdder SESSIONS_RESUMED = new LongAdder();  // player came back with their token
+    static final LongAdder GAMES_ABANDONED = new LongAdder();  // ended early (player left or game idle)
+
+    /**
+     * Gauges kept here (current values)
+     */
+    static final LongAdder CONNECTED = new LongAdder();  // open client connections (players, spectators, handshakes in progress)
+
+    /**
+     * Latency histograms (nanoseconds)
+     */
+    static final Histogram ACCEPT = new Histogram();  // accepted socket handed to handshake thread/event loop
+    static final Histogram HANDSHAKE = new Histogram();  // accepted -> name read in and player queued
+    static final Histogram MOVE = new Histogram();  // 'possibleMove()' for an accepted move, including telling both players
+    static final Histogram WIN_CHECK = new Histogram();  // disc dropped and win checked ('GameState.play()') for one player's move
+    static final Histogram SOCKET_WRITE = new Histogram();  // one write of queued messages to a socket
+
+    /**
+     * Gauges owned elsewhere (e.g. games in progress from 'Matchmaker')... read when metrics are scraped
+     */
+    private static final Map<String, LongSupplier> GAUGES = new LinkedHashMap<>();
+
+    private static final String[] HISTOGRAM_NAMES = {"accept", "handshake", "move", "win_check", "socket_write"};
+    private static final Histogram[] HISTOGRAMS = {ACCEPT, HANDSHAKE, MOVE, WIN_CHECK, SOCKET_WRITE};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999", "max"};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999", "1"};
+
+    private Metrics() {
+    }
+
+    /**
+     * Adding a gauge read from given supplier e.g. 'games_active'
+     */
+    static synchronized void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Returns every metric by name e.g. 'moves_total' -> 12000, 'move_nanos_p99' -> 81919 (JMX attributes)
+     */
+    static Map<String, Long> snapshot() {
+        Map<String, Long> values = counters();
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            String name = HISTOGRAM_NAMES[i] + "_nanos";
+            values.put(name + "_count", HISTOGRAMS[i].count());
+            values.put(name + "_sum", HISTOGRAMS[i].sum());
+            for (int q = 0; q < QUANTILES.length; q++) {
+                values.put(name + "_" + QUANTILE_NAMES[q], HISTOGRAMS[i].percentile(QUANTILES[q]));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns every metric as text, one 'name value' per line (Prometheus text format... quantiles as labels)
+     */
+    static String scrape() {
+        StringBuilder text = new StringBuilder(4096);
+        for (Map.Entry<String, Long> metric : counters().entrySet()) {
+            text.append(metric.getKey()).append(' ').append(metric.getValue()).append('\n');
+        }
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            String name = HISTOGRAM_NAMES[i] + "_nanos";
+            for (int q = 0; q < QUANTILES.length; q++) {
+                text.append(name).append("{quantile=\"").append(QUANTILE_LABELS[q]).append("\"} ")
+                        .append(HISTOGRAMS[i].percentile(QUANTILES[q])).append('\n');
+            }
+            text.append(name).append("_count ").append(HISTOGRAMS[i].count()).append('\n');
+            text.append(name).append("_sum ").append(HISTOGRAMS[i].sum()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Counters and gauges (everything but histograms)
+     */
+    private static synchronized Map<String, Long> counters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("connections_accepted_total", CONNECTIONS_ACCEPTED.sum());
+        values.put("handshakes_total", HANDSHAKES.sum());
+        values.put("handshake_failures_total", HANDSHAKE_FAILURES.sum());
+        values.put("games_started_total", GAMES_STARTED.sum());
+        values.put("moves_total", MOVES.sum());
+        values.put("moves_rejected_total", MOVES_REJECTED.sum());
+        values.put("socket_writes_total", SOCKET_WRITES.sum());
+        values.put("bytes_written_total", BYTES_WRITTEN.sum());
+        values.put("slow_clients_dropped_total", SLOW_CLIENTS_DROPPED.sum());
+        values.put("clients_disconnected_total", CLIENTS_DISCONNECTED.sum());
+        values.put("sessions_parked_total", SESSIONS_PARKED.sum());
+        values.put("sessions_resumed_total", SESSIONS_RESUMED.sum());
+        values.put("games_abandoned_total", GAMES_ABANDONED.sum());
+        values.put("log_dropped_total", Log.dropped());
+        values.put("connections_open", CONNECTED.sum());
+        for (Map.Entry<String, LongSupplier> gauge : GAUGES.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+}
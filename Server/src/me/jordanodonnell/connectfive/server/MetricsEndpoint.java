@@ -0,0 +1,114 @@
+package me.jordanodonnell.connectfive.server;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+/**
+ * MetricsEndpoint Class: Makes 'Metrics' readable from outside the process
+ *  -> JMX: MBean 'me.jordanodonnell.connectfive:type=Metrics' (e.g. in JConsole/VisualVM), one attribute per metric
+ *  -> HTTP ('--metrics-port N'): 'http://localhost:N/metrics' returns every metric as text... local connections only
+ */
+final class MetricsEndpoint {
+
+    private static final String OBJECT_NAME = "me.jordanodonnell.connectfive:type=Metrics";
+
+    private MetricsEndpoint() {
+    }
+
+    /**
+     * Registering metrics MBean with the platform MBean server
+     */
+    static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Log.info("Metrics MBean Not Registered!", e);
+        }
+    }
+
+    /**
+     * Serving metrics as text on given port (loopback address only)
+     */
+    static void serveHttp(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();  // runs on its own (single) thread
+        Log.info("Metrics on http://localhost:" + port + "/metrics");
+    }
+
+    /**
+     * MetricsBean Class: Read-only MBean whose attributes are whatever 'Metrics.snapshot()' holds (all longs)
+     */
+    private static final class MetricsBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            Long value = Metrics.snapshot().get(name);
+            if (value == null) {
+                throw new AttributeNotFoundException(name);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Long> values = Metrics.snapshot();  // one snapshot for all attributes asked for
+            AttributeList attributes = new AttributeList();
+            for (String name : names) {
+                if (values.containsKey(name)) {
+                    attributes.add(new Attribute(name, values.get(name)));
+                }
+            }
+            return attributes;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(action);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Long> values = Metrics.snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (String name : values.keySet()) {
+                attributes[i++] = new MBeanAttributeInfo(name, "long", name, true, false, false);
+            }
+            return new MBeanInfo(MetricsBean.class.getName(), "Connect Five server metrics",
+                    attributes, null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NioServer Class: Multiplexed server mode ('--nio')
+ * All player connections are shared between a small pool of selector event loops (one per core) instead of a thread per player
+ * -> an idle player costs a socket and a few hundred bytes of buffers rather than a blocked OS thread
+ *
+ * Same handshake ('writeUTF' name) and protocol ('MOVE', 'VALID_MOVE', 'OPPONENT_MOVED'... TEXT or BINARY) as 'Server'
+ * so existing clients work unchanged. Game logic is run straight from the event loop that read the command
+ */
+class NioServer {
+
+    private static final int MAX_NAME_BYTES = 160;  // longest handshake name accepted (player's, plus 'MATCH' fields from a 'Gateway')
+    private static final int INBOUND_BUFFER_SIZE = 256;  // longest command line accepted from a client
+    private static final int MAX_PENDING_BYTES = 64 * 1024;  // outbound bytes queued for a client before it is dropped (3 snapshots of the biggest board)
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;  // queued messages gathered into one socket write
+
+    private final EventLoop[] loops;
+    private final Matchmaker matchmaker;
+
+    /**
+     * Opt-in ('--batch-flush'): flushes made on an event loop wait until the end of its select pass instead of writing
+     * straight away, so a client involved in several moves in one pass (e.g. spectators, bots) gets a single write
+     */
+    private final boolean batchFlushes;
+
+    /**
+     * Handshake deadlines... clients that never send their name are closed instead of holding a connection forever
+     */
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "handshake-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creating given number of event loops (not started until 'run()')... players pass to 'matchmaker' once named
+     */
+    NioServer(int loopCount, Matchmaker matchmaker, boolean batchFlushes) throws IOException {
+        this.matchmaker = matchmaker;
+        this.batchFlushes = batchFlushes;
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop();
+        }
+    }
+
+    /**
+     * Accepting connections on given port and handing them out to the event loops in turn
+     */
+    void run(int port) throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "event-loop-" + i);
+            loops[i].thread = thread;
+            thread.start();
+        }
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(port), 1024);
+            System.out.println("\nConnect Five Server is Running! (" + loops.length + " event loops)");
+
+            int next = 0;
+            while (true) {
+                SocketChannel channel = listener.accept();  // successfully connected to client - accepted
+                long acceptedAt = System.nanoTime();
+                Metrics.CONNECTIONS_ACCEPTED.increment();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+                Metrics.ACCEPT.recordSince(acceptedAt);
+            }
+        }
+    }
+
+    /**
+     * EventLoop Class: One selector thread serving many connections
+     * Other threads hand work over through concurrent queues and wake the selector up
+     */
+    final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        private final Queue<ChannelConnection> writes = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);  // shared by all of this loop's connections
+        private Thread thread;
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        /**
+         * Handing a newly accepted channel over to this loop
+         */
+        void register(SocketChannel channel) {
+            registrations.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Writing out a connection's queued messages
+         * On the loop itself this happens straight away (or at the end of the select pass when batching)...
+         * from any other thread the write is handed over and the selector woken up
+         */
+        void flush(ChannelConnection connection) {
+            if (Thread.currentThread() != thread) {
+                writes.add(connection);
+                selector.wakeup();
+            } else if (batchFlushes) {
+                writes.add(connection);  // written by 'writePending()' once every ready key has been handled
+            } else {
+                connection.scheduled.set(false);
+                connection.writeOrClose();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    registerPending();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        ChannelConnection connection = (ChannelConnection) key.attachment();
+
+                        // a single bad client (broken socket, malformed command) must never take the loop down
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            connection.close();
+                        }
+                    }
+                    writePending();
+                } catch (IOException e) {
+                    Log.info("Event Loop Failed!", e);
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = registrations.poll()) != null) {
+                ChannelConnection connection = new ChannelConnection(channel, this);
+                try {
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    timeouts.schedule(connection::handshakeTimeout, Server.HANDSHAKE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void writePending() {
+            ChannelConnection connection;
+            while ((connection = writes.poll()) != null) {
+                connection.scheduled.set(false);  // cleared first so messages flushed from now on schedule another write
+                connection.writeOrClose();
+            }
+        }
+    }
+
+    /**
+     * ChannelConnection Class: Non-blocking connection to one client
+     * Reads the 'writeUTF' name handshake then commands... outbound messages queue until the loop writes them
+     */
+    final class ChannelConnection implements Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private SelectionKey key;
+
+        private final ByteBuffer inbound = ByteBuffer.allocate(INBOUND_BUFFER_SIZE);
+        private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+        private int headOffset;  // bytes of first queued message already written (event loop only)
+        private final AtomicInteger pendingBytes = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Protocol.Codec codec = Protocol.TEXT;  // format messages are sent in (guarded by 'this')
+
+        private volatile boolean named;  // true once handshake (player name) has been read in
+        private volatile Game.Player player;  // set once paired... set from whichever loop completed the pairing
+        private final RateLimiter rejections = new RateLimiter();  // event loop only
+        private volatile boolean forfeited;  // disconnected for misbehaving... game not held for it
+        private final long connectedAt = System.nanoTime();  // start of handshake
+
+        ChannelConnection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            Metrics.CONNECTED.increment();
+        }
+
+        @Override
+        public synchronized void send(int type, int square) {
+            enqueue(codec.encode(type, square));
+        }
+
+        @Override
+        public synchronized void send(int type, String text) {
+            enqueue(codec.encode(type, text));
+        }
+
+        @Override
+        public synchronized void send(Protocol.Frame frame) {
+            enqueue(frame.encoded(codec));
+        }
+
+        /**
+         * Acknowledging switch to BINARY (acknowledgement itself is the last TEXT message client receives)
+         */
+        private synchronized void switchToBinary() {
+            enqueue(Protocol.BINARY_ACKNOWLEDGEMENT);
+            flush();
+            codec = Protocol.BINARY;
+        }
+
+        /**
+         * Queueing encoded message until next 'flush()' (encoded arrays are shared, so queued as they are)
+         */
+        private void enqueue(byte[] message) {
+            if (closed.get()) {
+                return;
+            }
+
+            // client not reading its messages... drop it rather than buffering without limit
+            if (pendingBytes.addAndGet(message.length) > MAX_PENDING_BYTES) {
+                Metrics.SLOW_CLIENTS_DROPPED.increment();
+                close();
+                return;
+            }
+            outbound.add(message);
+        }
+
+        @Override
+        public void flush() {
+            if (!closed.get() && !outbound.isEmpty() && scheduled.compareAndSet(false, true)) {
+                loop.flush(this);
+            }
+        }
+
+        @Override
+        public void open(Game.Player player) {
+            this.player = player;
+            if (closed.get() && player != null) {
+                player.disconnected(this, false);  // left before game started
+            }
+        }
+
+        @Override
+        public int pendingBytes() {
+            return pendingBytes.get();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            Metrics.CONNECTED.decrement();
+            if (!named) {
+                Metrics.HANDSHAKE_FAILURES.increment();  // gone (or timed out) before sending a name
+            }
+            try {
+                channel.close();  // also cancels selection key
+            }
+            catch (IOException e) {
+                Log.info("Close Failed!", e);
+            }
+
+            Game.Player current = player;
+            if (current != null) {
+                current.disconnected(this, forfeited);  // game parked or abandoned... opponent no longer left waiting
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed.get();
+        }
+
+        /**
+         * Closing connection if client still has not sent its name
+         */
+        void handshakeTimeout() {
+            if (!named) {
+                close();
+            }
+        }
+
+        /**
+         * Reading in whatever the client has sent... handshake first, then complete command lines
+         */
+        void read() throws IOException {
+            if (channel.read(inbound) == -1) {
+                close();  // client disconnected
+                return;
+            }
+            inbound.flip();
+
+            if (named || readName()) {
+                readCommands();  // handshake and first commands often arrive in the same read
+            }
+            inbound.compact();
+
+            // buffer full without a complete name or command -> not a Connect Five client
+            if (!inbound.hasRemaining()) {
+                if (!named) {
+                    throw new IOException("Name too long");
+                }
+                disconnect(Protocol.COMMAND_TOO_LONG);
+            }
+        }
+
+        /**
+         * Returns true once the 'writeUTF' name (2 byte length + modified UTF-8) has fully arrived and been handled
+         */
+        private boolean readName() throws IOException {
+            if (inbound.remaining() < 2) {
+                return false;
+            }
+            int length = inbound.getShort(inbound.position()) & 0xFFFF;
+            if (length > MAX_NAME_BYTES) {
+                throw new IOException("Name too long");
+            }
+            if (inbound.remaining() < 2 + length) {
+                return false;
+            }
+
+            byte[] handshake = new byte[2 + length];
+            inbound.get(handshake);
+            String name = new DataInputStream(new ByteArrayInputStream(handshake)).readUTF();
+            named = true;
+            matchmaker.enqueue(this, name);
+            Metrics.HANDSHAKES.increment();
+            Metrics.HANDSHAKE.recordSince(connectedAt);
+            return true;
+        }
+
+        /**
+         * Passing every complete command in buffer to player (TEXT lines and BINARY frames)... partial command stays in buffer
+         * Moves sent before game starts are turned away, but a switch to BINARY is handled straight away
+         * Commands turned away are rate limited ('RateLimiter')... a client flooding them is disconnected and the rest
+         * of its buffer dropped, so one client can only ever hold up its loop for one buffer of commands
+         */
+        private void readCommands() {
+            byte[] bytes = inbound.array();
+            int start = inbound.position();
+            int limit = inbound.limit();
+
+            while (start < limit) {
+                int command;
+
+                // BINARY frame -> opcode + board index
+                if (Protocol.isBinary(bytes[start])) {
+                    if (limit - start < 2 || limit - start < 1 + Protocol.squareBytes(bytes[start + 1])) {
+                        break;
+                    }
+                    int length = 1 + Protocol.squareBytes(bytes[start + 1]);
+                    command = bytes[start] != Protocol.MOVE ? Protocol.NOT_A_MOVE
+                            : Protocol.square(bytes[start + 1] & 0xFF, length == 3 ? bytes[start + 2] & 0xFF : 0);
+                    start += length;
+                }
+                // TEXT line -> only once line ending has arrived
+                else {
+                    int end = start;
+                    while (end < limit && bytes[end] != '\n') {
+                        end++;
+                    }
+                    if (end == limit) {
+                        break;
+                    }
+                    command = Protocol.parseCommand(bytes, start, end > start && bytes[end - 1] == '\r' ? end - 1 : end);
+                    start = end + 1;
+                }
+
+                Game.Player current = player;
+                if (command == Protocol.BINARY_REQUESTED) {
+                    switchToBinary();
+                } else if (command == Protocol.NOT_A_MOVE || current == null || !current.handleMove(command)) {
+                    if (!rejections.tryAcquire()) {
+                        disconnect(Protocol.TOO_MANY_REJECTED);
+                        start = limit;
+                        break;
+                    }
+                    if (command != Protocol.NOT_A_MOVE && current != null) {
+                        send(Protocol.MESSAGE, "Not Possible Move!");
+                        flush();
+                    }
+                }
+            }
+            inbound.position(start);
+        }
+
+        /**
+         * Disconnecting misbehaving client... told why first ('GOODBYE', written straight away as this runs on the
+         * connection's own loop) and its game forfeited
+         */
+        private void disconnect(int reason) {
+            Metrics.CLIENTS_DISCONNECTED.increment();
+            Log.info("Client Disconnected!", Protocol.goodbye(reason));
+            forfeited = true;
+            send(Protocol.GOODBYE, Protocol.goodbye(reason));
+            try {
+                write();
+                channel.shutdownOutput();  // 'GOODBYE' goes out ahead of the close
+            } catch (IOException e) {
+                // already gone
+            }
+            close();
+        }
+
+        void writeOrClose() {
+            try {
+                write();
+            } catch (IOException | RuntimeException e) {
+                close();
+            }
+        }
+
+        /**
+         * Writing queued messages... all of them are gathered into the loop's write buffer so they leave in one syscall
+         * Whatever the socket could not take is written once it is writable again
+         */
+        void write() throws IOException {
+            ByteBuffer buffer = loop.writeBuffer;
+            buffer.clear();
+
+            int offset = headOffset;
+            for (byte[] message : outbound) {
+                int length = Math.min(message.length - offset, buffer.remaining());
+                buffer.put(message, offset, length);
+                offset = 0;
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            long start = System.nanoTime();
+            int written = channel.write(buffer);
+            Metrics.SOCKET_WRITE.recordSince(start);
+            Metrics.SOCKET_WRITES.increment();
+            Metrics.BYTES_WRITTEN.add(written);
+            pendingBytes.addAndGet(-written);
+            consume(written);
+
+            key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Dropping written bytes off the front of the queue
+         */
+        private void consume(int written) {
+            while (written > 0) {
+                byte[] head = outbound.peek();
+                int remaining = head.length - headOffset;
+
+                if (written < remaining) {
+                    headOffset += written;
+                    return;
+                }
+                outbound.poll();
+                headOffset = 0;
+                written -= remaining;
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protocol Class: Message types and the two wire formats messages can be sent in
+ *
+ * TEXT   -> original newline terminated lines e.g. 'VALID_MOVE40', 'OPPONENT_MOVED 40', 'MESSAGE Your Turn!'
+ * BINARY -> one byte opcode (always below 0x20 so it can never be mistaken for a text line) followed by...
+ *              MOVE / VALID_MOVE / OPPONENT_MOVED  -> board index... one byte below 128, else two (top bit set, 15 bit index)
+ *              VICTORY / DEFEAT / TIE              -> nothing
+ *              MESSAGE / WELCOME / SESSION /
+ *              GOODBYE                             -> one byte length + UTF-8 text
+ *              BOARD                               -> rows, columns, win length (one byte each)
+ *
+ * Client asks for BINARY by sending the line 'PROTOCOL BINARY' straight after its name... server answers with the same
+ * line (in TEXT) and sends everything after it in BINARY. Older clients never ask and older servers ignore the request,
+ * so either side falls back to TEXT. Server accepts commands in both formats at any time (first byte tells them apart)
+ *
+ * Board other than the standard 6x9 (five in a row) -> asked for with 'BOARD <rows> <columns> <win length> <name>' as the
+ * handshake name, and told to the client ('BOARD 20 20 5') straight after 'WELCOME'. Nothing changes on a standard board,
+ * so older clients keep working against servers that still default to it
+ *
+ * Resumable session -> asked for by starting the handshake name with 'SESSION ' (before any 'BOARD ...'). The client is
+ * sent 'SESSION <token>' straight after 'WELCOME' (and 'BOARD'). If its connection drops mid-game it has a grace period
+ * to connect again with 'RESUME <token> <discs seen>' as its name... it is sent 'SESSION <token> <first disc>' then the
+ * moves from that disc on (the ones it missed, or the whole board from 0 if it is too far behind) and play carries on.
+ * Clients that never ask are never sent 'SESSION'
+ *
+ * Client disconnected by the server for misbehaving -> sent 'GOODBYE <reason code> <reason>' first (best effort... it
+ * may not be reading). The session is forfeited, so resuming finds the game already over. Players of a game abandoned
+ * without a result (nobody moved in time) are sent 'GOODBYE 3 Game Abandoned!' too, so they do not try to resume it, and
+ * a player routed by a 'Gateway' whose opponent never reaches the server is sent 'GOODBYE 4 Opponent Never Arrived!'
+ */
+final class Protocol {
+
+    /**
+     * Message types (also the BINARY opcodes)
+     */
+    static final int MOVE = 0x01;
+    static final int VALID_MOVE = 0x02;
+    static final int OPPONENT_MOVED = 0x03;
+    static final int VICTORY = 0x04;
+    static final int DEFEAT = 0x05;
+    static final int TIE = 0x06;
+    static final int MESSAGE = 0x07;
+    static final int WELCOME = 0x08;
+    static final int BOARD = 0x09;
+    static final int SESSION = 0x0A;
+    static final int GOODBYE = 0x0B;
+
+    /**
+     * Reason codes carried by 'GOODBYE'
+     */
+    static final int TOO_MANY_REJECTED = 1;  // kept sending commands that were turned away (see 'RateLimiter')
+    static final int COMMAND_TOO_LONG = 2;  // longer than any real command... not a Connect Five client
+    static final int GAME_ABANDONED = 3;  // game ended without a result (see 'Sessions')... nothing left to resume
+    static final int NO_OPPONENT = 4;  // 'Gateway' player whose opponent never reached this server (see 'Matchmaker')
+
+    static final String BINARY_REQUEST = "PROTOCOL BINARY";  // client request and server acknowledgement
+    static final String SPECTATE = "SPECTATE";  // handshake name asking to watch a game ('SPECTATE' or 'SPECTATE <game id>')
+    static final String BOARD_REQUEST = "BOARD";  // handshake name asking for a board shape ('BOARD <rows> <columns> <win length> <name>')
+    static final String MATCH = "MATCH";  // handshake name from 'Gateway' ('MATCH <secret> <game id> <player name>')... pair with same id
+    static final int MAX_GATEWAY_SECRET = 64;
+    static final String SESSION_REQUEST = "SESSION";  // handshake name asking for a resumable session ('SESSION <name>')
+    static final String RESUME = "RESUME";  // handshake name taking a dropped seat back ('RESUME <token> <discs seen>')
+
+    /**
+     * Results of 'parseCommand()' other than a board index
+     */
+    static final int NOT_A_MOVE = -2;  // command other than 'MOVE' (ignored)
+    static final int BINARY_REQUESTED = -3;  // client asked to switch to BINARY
+
+    private static final byte[] MOVE_PREFIX = "MOVE ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BINARY_REQUEST_BYTES = BINARY_REQUEST.getBytes(StandardCharsets.US_ASCII);
+    static final byte[] BINARY_ACKNOWLEDGEMENT = (BINARY_REQUEST + "\n").getBytes(StandardCharsets.US_ASCII);  // sent in TEXT
+
+    static final Codec TEXT = new TextCodec();
+    static final Codec BINARY = new BinaryCodec();
+
+    private Protocol() {
+    }
+
+    /**
+     * Returns given '--gateway-secret' (shared by a 'Gateway' and its nodes, sent in 'MATCH') if it can be sent as one field
+     */
+    static String gatewaySecret(String secret) {
+        if (secret != null && (secret.isEmpty() || secret.length() > MAX_GATEWAY_SECRET || secret.contains(" "))) {
+            throw new IllegalArgumentException("Gateway secret must be 1-" + MAX_GATEWAY_SECRET + " characters without spaces");
+        }
+        return secret;
+    }
+
+    /**
+     * Returns 'GOODBYE' text for given reason code e.g. '1 Too Many Rejected Commands!'
+     */
+    static String goodbye(int reason) {
+        switch (reason) {
+            case TOO_MANY_REJECTED: return reason + " Too Many Rejected Commands!";
+            case COMMAND_TOO_LONG: return reason + " Command Too Long!";
+            case NO_OPPONENT: return reason + " Opponent Never Arrived!";
+            default: return reason + " Game Abandoned!";
+        }
+    }
+
+    /**
+     * Returns true if the given first byte of a command starts a BINARY frame rather than a TEXT line
+     */
+    static boolean isBinary(int firstByte) {
+        return firstByte >= 0 && firstByte < 0x20 && firstByte != '\r' && firstByte != '\n';
+    }
+
+    /**
+     * Parses a TEXT command line (without line ending) held in bytes 'from' to 'to'
+     * Returns board index for 'MOVE n' (-1 if 'n' is not a number), 'BINARY_REQUESTED' or 'NOT_A_MOVE'
+     * Works straight off the bytes read in... no String created per command
+     */
+    static int parseCommand(byte[] line, int from, int to) {
+        if (startsWith(line, from, to, BINARY_REQUEST_BYTES) && to - from == BINARY_REQUEST_BYTES.length) {
+            return BINARY_REQUESTED;
+        }
+        if (!startsWith(line, from, to, MOVE_PREFIX)) {
+            return NOT_A_MOVE;
+        }
+
+        int location = 0;
+        int start = from + MOVE_PREFIX.length;
+        if (start == to || to - start > 4) {
+            return -1;
+        }
+        for (int i = start; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            location = location * 10 + digit;
+        }
+        return location;
+    }
+
+    /**
+     * Returns number of bytes the BINARY board index starting with given byte takes up (1 or 2)
+     */
+    static int squareBytes(int firstByte) {
+        return (firstByte & 0x80) == 0 ? 1 : 2;
+    }
+
+    /**
+     * Returns BINARY board index from its first byte and (if 'squareBytes()' is 2) its second
+     */
+    static int square(int firstByte, int secondByte) {
+        return (firstByte & 0x80) == 0 ? firstByte : (firstByte & 0x7F) << 8 | secondByte;
+    }
+
+    private static boolean startsWith(byte[] line, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Codec Interface: Turns a message into the bytes sent for it
+     * Returned arrays may be shared between connections and must never be modified
+     */
+    interface Codec {
+
+        /**
+         * Encodes VALID_MOVE, OPPONENT_MOVED (with board index) or VICTORY, DEFEAT, TIE (index ignored)
+         */
+        byte[] encode(int type, int square);
+
+        /**
+         * Encodes MESSAGE, WELCOME, SESSION or GOODBYE with their text
+         */
+        byte[] encode(int type, String text);
+    }
+
+    /**
+     * Frame Class: Several messages encoded together, once per format, then sent as they are to any number of
+     * connections (spectators)... immutable, so every connection queues the same array instead of its own copy
+     */
+    static final class Frame {
+        private final byte[] text;
+        private final byte[] binary;
+
+        private Frame(byte[] text, byte[] binary) {
+            this.text = text;
+            this.binary = binary;
+        }
+
+        /**
+         * Returns frame in format of given codec
+         */
+        byte[] encoded(Codec codec) {
+            return codec == BINARY ? binary : text;
+        }
+
+        int length() {
+            return text.length;
+        }
+
+        /**
+         * Builder Class: Adds messages to a frame in the order they are to be read
+         */
+        static final class Builder {
+            private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+            private final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+            Builder add(int type, int square) {
+                text.writeBytes(TEXT.encode(type, square));
+                binary.writeBytes(BINARY.encode(type, square));
+                return this;
+            }
+
+            /**
+             * Adds MESSAGE or WELCOME... encoded here rather than by the codecs so text with player names is never cached
+             */
+            Builder add(int type, String message) {
+                text.writeBytes(TextCodec.line((type == WELCOME ? "WELCOME " : "MESSAGE ") + message));
+                binary.writeBytes(BinaryCodec.frame(type, message));
+                return this;
+            }
+
+            /**
+             * Adds BOARD with given board's shape
+             */
+            Builder add(Board board) {
+                text.writeBytes(TextCodec.line("BOARD " + board.rows + " " + board.columns + " " + board.winLength));
+                binary.writeBytes(new byte[]{BOARD, (byte) board.rows, (byte) board.columns, (byte) board.winLength});
+                return this;
+            }
+
+            Frame build() {
+                return new Frame(text.toByteArray(), binary.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Most squares any board can have (every move message for each is built once up front)
+     */
+    private static final int MAX_SQUARES = Board.MAX_SIDE * Board.MAX_SIDE;
+
+    /**
+     * TextCodec Class: Original line protocol... every possible move message is built once up front
+     */
+    private static final class TextCodec implements Codec {
+        private final byte[][] validMoves = new byte[MAX_SQUARES][];
+        private final byte[][] opponentMoves = new byte[MAX_SQUARES][];
+        private final byte[] victory = line("VICTORY");
+        private final byte[] defeat = line("DEFEAT");
+        private final byte[] tie = line("TIE");
+        private final Map<String, byte[]> messages = new ConcurrentHashMap<>();  // server's own fixed messages e.g. 'Your Turn!'
+
+        TextCodec() {
+            for (int i = 0; i < MAX_SQUARES; i++) {
+                validMoves[i] = line("VALID_MOVE" + i);
+                opponentMoves[i] = line("OPPONENT_MOVED " + i);
+            }
+        }
+
+        @Override
+        public byte[] encode(int type, int square) {
+            switch (type) {
+                case VALID_MOVE: return validMoves[square];
+                case OPPONENT_MOVED: return opponentMoves[square];
+                case VICTORY: return victory;
+                case DEFEAT: return defeat;
+                case TIE: return tie;
+                default: throw new IllegalArgumentException("Not a board message: " + type);
+            }
+        }
+
+        @Override
+        public byte[] encode(int type, String text) {
+            switch (type) {
+                case MESSAGE: return messages.computeIfAbsent(text, message -> line("MESSAGE " + message));
+                case WELCOME: return line("WELCOME " + text);  // player names not cached
+                case SESSION: return line("SESSION " + text);  // nor tokens
+                case GOODBYE: return line("GOODBYE " + text);
+                default: throw new IllegalArgumentException("Not a text message: " + type);
+            }
+        }
+
+        private static byte[] line(String message) {
+            return (message + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * BinaryCodec Class: Compact format... board messages are two bytes (three past index 127, one for results),
+     * also built once up front
+     */
+    private static final class BinaryCodec implements Codec {
+        private final byte[][] validMoves = new byte[MAX_SQUARES][];
+        private final byte[][] opponentMoves = new byte[MAX_SQUARES][];
+        private final byte[] victory = {VICTORY};
+        private final byte[] defeat = {DEFEAT};
+        private final byte[] tie = {TIE};
+        private final Map<String, byte[]> messages = new ConcurrentHashMap<>();
+
+        BinaryCodec() {
+            for (int i = 0; i < MAX_SQUARES; i++) {
+                validMoves[i] = move(VALID_MOVE, i);
+                opponentMoves[i] = move(OPPONENT_MOVED, i);
+            }
+        }
+
+        private static byte[] move(int type, int square) {
+            return square < 0x80
+                    ? new byte[]{(byte) type, (byte) square}
+                    : new byte[]{(byte) type, (byte) (0x80 | square >>> 8), (byte) square};
+        }
+
+        @Override
+        public byte[] encode(int type, int square) {
+            switch (type) {
+                case VALID_MOVE: return validMoves[square];
+                case OPPONENT_MOVED: return opponentMoves[square];
+                case VICTORY: return victory;
+                case DEFEAT: return defeat;
+                case TIE: return tie;
+                default: throw new IllegalArgumentException("Not a board message: " + type);
+            }
+        }
+
+        @Override
+        public byte[] encode(int type, String text) {
+            switch (type) {
+                case MESSAGE: return messages.computeIfAbsent(text, message -> frame(MESSAGE, message));
+                case WELCOME: return frame(WELCOME, text);
+                case SESSION: return frame(SESSION, text);
+                case GOODBYE: return frame(GOODBYE, text);
+                default: throw new IllegalArgumentException("Not a text message: " + type);
+            }
+        }
+
+        /**
+         * Opcode + length + UTF-8 text (text cut short at 255 bytes, before any character that would not fit whole)
+         */
+        private static byte[] frame(int type, String text) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(utf8.length, 255);
+            while (length < utf8.length && (utf8[length] & 0xC0) == 0x80) {
+                length--;  // cut falls inside a character (continuation byte next)... back to its first byte
+            }
+            byte[] frame = new byte[2 + length];
+            frame[0] = (byte) type;
+            frame[1] = (byte) length;
+            System.arraycopy(utf8, 0, frame, 2, length);
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiter Class: Token bucket for one client's commands that are turned away... moves out of turn or into a full
+ * column, moves before the game has started or from a spectator, lines that are not commands
+ *
+ *  -> each one takes a token, tokens come back at 'ratePerSecond' up to 'burst' (a few mis-clicks never run out)
+ *  -> token taken -> client told as before ('Not Possible Move!')
+ *  -> none left   -> client is flooding... disconnected ('GOODBYE') rather than costing the server a reply per command
+ * Moves that are played cost nothing (a client can only make one per opponent move anyway)
+ *
+ * Kept as the time the bucket will next be full rather than a token count, so taking a token is a clock read and
+ * a compare... only ever touched by the thread reading the connection, so no locking
+ */
+final class RateLimiter {
+
+    static final int DEFAULT_RATE = 5;  // commands turned away per second a client can keep up
+    static final int DEFAULT_BURST = 20;  // commands turned away in a row before the rate applies
+
+    private static volatile long intervalNanos = TimeUnit.SECONDS.toNanos(1) / DEFAULT_RATE;  // time for one token to come back
+    private static volatile long burstNanos = DEFAULT_BURST * intervalNanos;  // time for an empty bucket to fill
+
+    private long fullAt = System.nanoTime();  // bucket is full from this time on
+
+    /**
+     * Setting rate and burst for every connection (server options... called before any client connects)
+     */
+    static void configure(int ratePerSecond, int burst) {
+        intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        burstNanos = Math.max(1, burst) * intervalNanos;
+    }
+
+    /**
+     * Returns true if a token was taken, false if the bucket is empty (nothing taken)
+     */
+    boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * As 'tryAcquire()' at given 'System.nanoTime()' (tests step the clock themselves)
+     */
+    boolean tryAcquire(long now) {
+        long next = Math.max(fullAt, now) + intervalNanos;  // token taken from a bucket that is full at 'now' at the latest
+        if (next - now > burstNanos) {
+            return false;
+        }
+        fullAt = next;
+        return true;
+    }
+}
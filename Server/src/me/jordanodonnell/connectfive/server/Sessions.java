@@ -0,0 +1,174 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sessions Class: Resumable seats and the timers that end games nobody is playing any more
+ *
+ *  -> player who asked for a session ('SESSION <name>') is sent a token with 'WELCOME'
+ *  -> their connection drops mid-game -> seat is parked for a grace period (game kept, opponent told to wait)
+ *  -> they connect again with 'RESUME <token> <discs seen>' -> moves missed are sent again (see 'Game.Player.resume()')
+ *  -> grace period runs out, or a player without a session leaves -> game abandoned, opponent wins
+ *  -> no move for the idle timeout -> game abandoned (both told)
+ *  -> game over -> players' connections closed shortly after if the clients have not left by then
+ *
+ * Every timer sits on one 'TimerWheel' so a parked or idle game costs a list entry, not a thread
+ */
+final class Sessions {
+
+    static final long DEFAULT_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(30);  // time a dropped player has to come back
+    static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);  // time a game can go without a move
+    private static final long LINGER_MILLIS = 2000;  // time clients have to read the result before being disconnected
+
+    private final TimerWheel wheel = new TimerWheel("session-timers", 100, 512);  // 100ms ticks, 51s per turn
+    private final Map<String, Game.Player> seats = new ConcurrentHashMap<>();  // token -> seat (while game is going)
+    private final SecureRandom random = new SecureRandom();
+    private final long graceMillis;
+    private final long idleMillis;
+
+    Sessions(long graceMillis, long idleMillis) {
+        this.graceMillis = graceMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Returns new token for a player... game id first when already known (from a 'Gateway') so the gateway can
+     * send the player back to the same node e.g. '17f3a2b4c0001-9c1e5d2a7b3f4e61'
+     */
+    String newToken(long gameId) {
+        return Long.toHexString(Math.max(gameId, 0)) + "-" + Long.toHexString(random.nextLong());
+    }
+
+    /**
+     * Returns game id at start of given token (0 if it has none)
+     */
+    static long gameId(String token) {
+        int dash = token.indexOf('-');
+        try {
+            return dash == -1 ? 0 : Long.parseUnsignedLong(token.substring(0, dash), 16);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Looking after given game once both players are seated (players with a token can now resume)
+     */
+    void started(Game game) {
+        game.sessions = this;
+        for (Game.Player player : game.players()) {
+            if (player.token != null) {
+                seats.put(player.token, player);
+            }
+        }
+        reapWhenIdle(game, idleMillis);
+    }
+
+    /**
+     * Checking game again once it could have gone the idle timeout without a move
+     */
+    private void reapWhenIdle(Game game, long delayMillis) {
+        synchronized (game) {
+            if (!game.state().isOver()) {
+                game.reaper = wheel.schedule(delayMillis, () -> checkIdle(game));
+            }
+        }
+    }
+
+    /**
+     * Abandoning game if nobody has moved for the idle timeout (runs on timer thread)
+     */
+    private void checkIdle(Game game) {
+        long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - game.lastMoveAt);
+        if (idle < idleMillis) {
+            reapWhenIdle(game, idleMillis - idle);  // moved since... check again when it could next be idle
+        } else {
+            game.abandon(null, null);
+        }
+    }
+
+    /**
+     * Given game is over (result or abandoned)... timers stopped, seats forgotten and connections closed shortly after
+     */
+    void ended(Game game) {
+        synchronized (game) {
+            if (game.reaper != null) {
+                game.reaper.cancel();  // game no longer held by the wheel until it would have been due
+                game.reaper = null;
+            }
+        }
+        wheel.schedule(LINGER_MILLIS, () -> {
+            for (Game.Player player : game.players()) {
+                if (player.token != null) {
+                    seats.remove(player.token, player);
+                }
+                player.connection.close();  // normally already closed by the client
+            }
+        });
+    }
+
+    /**
+     * Closing given connection shortly after (time for the client to read what it was just sent)... for a player
+     * turned away before any game started
+     */
+    void closeLater(Connection connection) {
+        wheel.schedule(LINGER_MILLIS, connection::close);
+    }
+
+    /**
+     * Given player's connection ('gone') dropped mid-game... seat held for the grace period if they have a token,
+     * otherwise (or if they forfeit it) game abandoned
+     * Runs on the next tick rather than on the caller's thread, which may be part way through sending a move
+     * (game cannot be ended until that move is out)
+     */
+    void dropped(Game.Player player, Connection gone, boolean forfeit) {
+        wheel.schedule(0, () -> {
+            Game game = player.game();
+            if (forfeit || player.token == null) {
+                game.abandon(player, gone);
+                return;
+            }
+            if (gone != player.connection || game.state().isOver()) {
+                return;  // already back (or game ended meanwhile)
+            }
+            Metrics.SESSIONS_PARKED.increment();
+            Connection opponent = player.opponent.connection;
+            opponent.send(Protocol.MESSAGE, "Opponent Disconnected! Waiting For Them To Return...");
+            opponent.flush();
+            wheel.schedule(graceMillis, () -> game.abandon(player, gone));  // does nothing if they came back
+        });
+    }
+
+    /**
+     * Handling 'RESUME <token> <discs seen>' handshake... connection takes its seat back, or is told it is too late
+     */
+    void resume(Connection connection, String request) {
+        String[] fields = request.split(" ");
+        Game.Player player = seats.get(fields[0]);
+        int seen;
+        try {
+            seen = fields.length > 1 ? Integer.parseInt(fields[1]) : -1;
+        } catch (NumberFormatException e) {
+            seen = -1;  // board sent whole instead
+        }
+
+        if (player == null) {
+            connection.send(Protocol.MESSAGE, "Session Expired!");
+            connection.flush();
+            connection.close();
+            return;
+        }
+        player.resume(connection, seen);
+        Metrics.SESSIONS_RESUMED.increment();
+    }
+
+    /**
+     * Returns number of seats that can currently be resumed
+     */
+    int count() {
+        return seats.size();
+    }
+}
@@ -0,0 +1,481 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulator Class: Plays games in-process as fast as the machine allows (no sockets, no thread per player)... for tuning
+ * computer players and measuring first-move advantage over millions of games
+ *
+ *      java Simulator --games 10000000                                         (random against random on every core)
+ *      java Simulator --games 1000000 --first greedy --second random --output games.sim
+ *      java Simulator --games 200 --first ai:50 --second greedy                (computer opponent, 50ms a move)
+ *      java Simulator --games 1000000 --rows 20 --columns 20 --win 5 --threads 4 --seed 42
+ *      java Simulator --read games.sim                                         (totals from a results file)
+ *
+ * Each thread plays whole games on its own 'Position' (one set of disc arrays changed in place) under the same rules as
+ * 'GameState.play()' -> 'Board.lowestFreeSquare()' for where a disc lands, 'Board.isWin()' through it, board full -> tie.
+ * Threads share nothing but a counter handing out games a block at a time and the results file
+ *
+ * Results file -> header then blocks of up to 'BLOCK_GAMES' games, column by column (each block written whole by the
+ * thread that played it, so blocks from different threads are interleaved)
+ *      header -> magic 'C5SM' (4 bytes) | version (1) | rows (1) | columns (1) | win length (1) | policies (2 x UTF)
+ *      block  -> games (4) | moves (4) | result of each game (1 each: 0 first won, 1 second won, 2 tie)
+ *                | moves in each game (2 each) | every column played, game after game (1 each)
+ */
+public class Simulator {
+
+    private static final int MAGIC = 0x4335534D;  // 'C5SM'
+    private static final int VERSION = 1;
+    private static final int BLOCK_GAMES = 4096;  // games handed out (and written) at a time
+    private static final long REPORT_MILLIS = 5000;  // how often progress is printed
+
+    static final int FIRST_WON = 0;
+    static final int SECOND_WON = 1;
+    static final int TIED = 2;
+
+    /**
+     * Policy Interface: Picks the column for the player to move... must be one with room ('Position.square()' != -1)
+     * Shared by every thread so must not keep state of its own between moves
+     */
+    interface Policy {
+        int column(Position position, SplittableRandom random);
+    }
+
+    /**
+     * Position Class: Game being played by one thread (changed in place and reused game after game)
+     */
+    static final class Position {
+        final Board board;
+        final long[][] discs;  // seat -> discs (see 'Board')
+        final byte[] moves;  // columns played so far this game
+        int turn;  // seat to move (0 moves first)
+        int discCount;
+
+        Position(Board board) {
+            this.board = board;
+            discs = new long[][] {new long[board.words], new long[board.words]};
+            moves = new byte[board.squares];
+        }
+
+        void reset() {
+            Arrays.fill(discs[0], 0);
+            Arrays.fill(discs[1], 0);
+            turn = 0;
+            discCount = 0;
+        }
+
+        /**
+         * Returns board index a disc dropped in given column would land on, or -1 if the column is full
+         */
+        int square(int column) {
+            return board.lowestFreeSquare(discs[0], discs[1], column);
+        }
+
+        /**
+         * Returns true if given seat would win by dropping a disc in given column
+         */
+        boolean wins(int seat, int column) {
+            int square = square(column);
+            if (square == -1) {
+                return false;
+            }
+            board.flip(discs[seat], square);
+            boolean won = board.isWin(discs[seat], square);
+            board.flip(discs[seat], square);  // taken back
+            return won;
+        }
+
+        /**
+         * Dropping disc in given column for player to move... returns status after it ('GameState.PLAYING', 'WON', 'TIED')
+         */
+        int play(int column) {
+            int square = column >= 0 && column < board.columns ? square(column) : -1;
+            if (square == -1) {
+                throw new IllegalStateException("Policy picked column " + column + " which has no room");
+            }
+            long[] mover = discs[turn];
+            board.flip(mover, square);
+            moves[discCount++] = (byte) column;
+            turn ^= 1;
+            return board.isWin(mover, square) ? GameState.WON : discCount == board.squares ? GameState.TIED : GameState.PLAYING;
+        }
+
+        /**
+         * Returns this position as a 'GameState' (moves replayed)... for policies built on the server's own classes
+         */
+        GameState state() {
+            GameState state = GameState.start(board);
+            for (int i = 0; i < discCount; i++) {
+                state = state.play(moves[i]).markPublished();
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Returns policy with given name
+     *  -> 'random' -> any column with room
+     *  -> 'centre' -> random, but columns nearer the centre more often
+     *  -> 'greedy' -> wins if it can, else blocks the opponent winning next move, else as 'centre'
+     *  -> 'ai:MILLIS' -> 'AiEngine' search with given time per move (standard 6x9 board only)
+     */
+    static Policy policy(String name, Board board) {
+        switch (name) {
+            case "random": return Simulator::randomColumn;
+            case "centre": return Simulator::centreColumn;
+            case "greedy": return Simulator::greedyColumn;
+            default:
+                if (name.startsWith("ai:") && board == Board.STANDARD) {
+                    AiEngine engine = new AiEngine(1, 1, Long.parseLong(name.substring(3)));  // searches on the simulator's threads
+                    return (position, random) -> engine.search(position.state());
+                }
+                throw new IllegalArgumentException("Unknown policy (random, centre, greedy or ai:MILLIS on 6x9): " + name);
+        }
+    }
+
+    private static int randomColumn(Position position, SplittableRandom random) {
+        int column;
+        do {
+            column = random.nextInt(position.board.columns);
+        } while (position.square(column) == -1);  // board is never full here... game would be over
+        return column;
+    }
+
+    private static int centreColumn(Position position, SplittableRandom random) {
+        int columns = position.board.columns;
+        int column;
+        do {
+            column = (random.nextInt(columns) + random.nextInt(columns) + 1) >> 1;  // sum of two -> peaks in the middle
+        } while (position.square(column) == -1);
+        return column;
+    }
+
+    private static int greedyColumn(Position position, SplittableRandom random) {
+        int column = winningColumn(position, position.turn);
+        if (column == -1) {
+            column = winningColumn(position, position.turn ^ 1);  // block it
+        }
+        return column != -1 ? column : centreColumn(position, random);
+    }
+
+    /**
+     * Returns column given seat would win in with its next disc, or -1 if there is none
+     */
+    private static int winningColumn(Position position, int seat) {
+        for (int column = 0; column < position.board.columns; column++) {
+            if (position.wins(seat, column)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tally Class: Results counted by one thread (added together at the end)
+     */
+    static final class Tally {
+        final long[] results = new long[3];  // FIRST_WON, SECOND_WON, TIED
+        final long[][] byOpening;  // first player's opening column -> results
+        long moves;
+
+        Tally(int columns) {
+            byOpening = new long[columns][3];
+        }
+
+        void add(int result, int length, int opening) {
+            results[result]++;
+            byOpening[opening][result]++;
+            moves += length;
+        }
+
+        void add(Tally other) {
+            for (int result = 0; result < 3; result++) {
+                results[result] += other.results[result];
+                for (int column = 0; column < byOpening.length; column++) {
+                    byOpening[column][result] += other.byOpening[column][result];
+                }
+            }
+            moves += other.moves;
+        }
+
+        long games() {
+            return results[FIRST_WON] + results[SECOND_WON] + results[TIED];
+        }
+
+        /**
+         * Returns results as text e.g. 'First won 55.21% (+/-0.03)... ' then first player's win rate per opening column
+         */
+        String summary() {
+            long games = Math.max(1, games());
+            double firstRate = (double) results[FIRST_WON] / games;
+            StringBuilder text = new StringBuilder(String.format(
+                    "First won %.2f%% (+/-%.2f) | second won %.2f%% | tied %.2f%% | %.1f moves per game%nFirst player's win rate by opening column:",
+                    100 * firstRate, 196 * Math.sqrt(firstRate * (1 - firstRate) / games),  // 95% confidence interval
+                    100.0 * results[SECOND_WON] / games, 100.0 * results[TIED] / games, (double) moves / games));
+            for (int column = 0; column < byOpening.length; column++) {
+                long opened = byOpening[column][0] + byOpening[column][1] + byOpening[column][2];
+                text.append(String.format(" %d=%.1f%%", column, opened == 0 ? 0 : 100.0 * byOpening[column][FIRST_WON] / opened));
+            }
+            return text.toString();
+        }
+    }
+
+    private final Board board;
+    private final Policy first;
+    private final Policy second;
+    private final long games;
+    private final FileChannel output;  // null -> results not written
+    private final AtomicLong handedOut = new AtomicLong();  // games given to threads so far
+    private final LongAdder played = new LongAdder();
+    private final LongAdder movesPlayed = new LongAdder();
+    private final Tally totals;
+    private volatile RuntimeException failure;
+
+    Simulator(Board board, Policy first, Policy second, long games, FileChannel output) {
+        this.board = board;
+        this.first = first;
+        this.second = second;
+        this.games = games;
+        this.output = output;
+        this.totals = new Tally(board.columns);
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        String read = option(options, "--read", null);
+        if (read != null) {
+            Tally tally = read(Paths.get(read));
+            System.out.println(tally.games() + " games in " + read);
+            System.out.println(tally.summary());
+            return;
+        }
+
+        Board board = Board.of(option(options, "--rows", Board.STANDARD.rows), option(options, "--columns", Board.STANDARD.columns),
+                option(options, "--win", Board.STANDARD.winLength));
+        if (board == null) {
+            throw new IllegalArgumentException("Board not supported");
+        }
+        String firstName = option(options, "--first", "random");
+        String secondName = option(options, "--second", "random");
+        long games = Long.parseLong(option(options, "--games", "1000000"));
+        int threads = option(options, "--threads", Runtime.getRuntime().availableProcessors());
+        long seed = Long.parseLong(option(options, "--seed", Long.toString(System.nanoTime())));
+        String outputPath = option(options, "--output", null);
+
+        FileChannel output = null;
+        if (outputPath != null) {
+            output = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writeHeader(output, board, firstName, secondName);
+        }
+
+        System.out.println("\nSimulating " + games + " games: " + firstName + " (first) against " + secondName + " on "
+                + board + ", " + threads + (threads == 1 ? " thread" : " threads") + (outputPath != null ? " -> " + outputPath : ""));
+        Simulator simulator = new Simulator(board, policy(firstName, board), policy(secondName, board), games, output);
+        try {
+            simulator.run(threads, new SplittableRandom(seed));
+        } finally {
+            if (output != null) {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Playing every game on given number of threads, printing games per second as it goes and the results at the end
+     */
+    void run(int threads, SplittableRandom seeds) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom random = seeds.split();  // split here so a given '--seed' always deals threads the same streams
+            Thread thread = new Thread(() -> {
+                try {
+                    work(random);
+                } catch (RuntimeException e) {
+                    failure = e;
+                    handedOut.set(games);  // other threads stop after their current block
+                } finally {
+                    finished.countDown();
+                }
+            }, "simulator-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        long lastGames = 0;
+        long lastReport = start;
+        while (!finished.await(REPORT_MILLIS, TimeUnit.MILLISECONDS)) {
+            long now = System.nanoTime();
+            long gamesNow = played.sum();
+            System.out.printf("games=%d games/s=%.0f%n", gamesNow, (gamesNow - lastGames) / ((now - lastReport) / 1e9));
+            lastGames = gamesNow;
+            lastReport = now;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = played.sum();
+        System.out.printf("%nPlayed %d games (%d moves) in %.2fs -> %.0f games/s (%.1fM games/min), %.0f moves/s%n",
+                total, movesPlayed.sum(), seconds, total / seconds, total / seconds * 60 / 1e6, movesPlayed.sum() / seconds);
+        System.out.println(totals.summary());
+    }
+
+    /**
+     * Executing run method of one simulator thread -> takes a block of games at a time until all are handed out
+     */
+    private void work(SplittableRandom random) {
+        Position position = new Position(board);
+        Tally tally = new Tally(board.columns);
+        byte[] results = new byte[BLOCK_GAMES];
+        short[] lengths = new short[BLOCK_GAMES];
+        byte[] moves = new byte[BLOCK_GAMES * board.squares];
+        ByteBuffer block = output == null ? null : ByteBuffer.allocateDirect(8 + BLOCK_GAMES * 3 + moves.length);
+
+        long from;
+        while ((from = handedOut.getAndAdd(BLOCK_GAMES)) < games) {
+            int count = (int) Math.min(BLOCK_GAMES, games - from);
+            int moveCount = 0;
+
+            for (int game = 0; game < count; game++) {
+                position.reset();
+                int status;
+                do {
+                    status = position.play((position.turn == 0 ? first : second).column(position, random));
+                } while (status == GameState.PLAYING);
+
+                int result = status == GameState.TIED ? TIED : position.turn == 1 ? FIRST_WON : SECOND_WON;  // turn already passed on
+                tally.add(result, position.discCount, position.moves[0]);
+                results[game] = (byte) result;
+                lengths[game] = (short) position.discCount;
+                System.arraycopy(position.moves, 0, moves, moveCount, position.discCount);
+                moveCount += position.discCount;
+            }
+
+            if (block != null) {
+                writeBlock(block, results, lengths, moves, count, moveCount);
+            }
+            played.add(count);
+            movesPlayed.add(moveCount);
+        }
+
+        synchronized (totals) {
+            totals.add(tally);
+        }
+    }
+
+    /**
+     * Writing one block of games to the results file (whole, so blocks from different threads never mix)
+     */
+    private void writeBlock(ByteBuffer block, byte[] results, short[] lengths, byte[] moves, int count, int moveCount) {
+        block.clear();
+        block.putInt(count).putInt(moveCount);
+        block.put(results, 0, count);
+        for (int game = 0; game < count; game++) {
+            block.putShort(lengths[game]);
+        }
+        block.put(moves, 0, moveCount);
+        block.flip();
+
+        try {
+            synchronized (output) {
+                while (block.hasRemaining()) {
+                    output.write(block);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Results not written", e);
+        }
+    }
+
+    private static void writeHeader(FileChannel output, Board board, String firstName, String secondName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(board.rows);
+        header.writeByte(board.columns);
+        header.writeByte(board.winLength);
+        header.writeUTF(firstName);
+        header.writeUTF(secondName);
+        output.write(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Returns results counted from a results file (every game's moves read, checked against its length)
+     */
+    static Tally read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(file);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a simulator results file: " + path);
+            }
+            in.readByte();  // rows
+            int columns = in.readUnsignedByte();
+            in.readByte();  // win length
+            System.out.println(in.readUTF() + " (first) against " + in.readUTF());
+
+            Tally tally = new Tally(columns);
+            byte[] results = new byte[BLOCK_GAMES];
+            int[] lengths = new int[BLOCK_GAMES];
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return tally;  // no more blocks
+                }
+                int moveCount = in.readInt();
+                in.readFully(results, 0, count);
+                for (int game = 0; game < count; game++) {
+                    lengths[game] = in.readUnsignedShort();
+                }
+                byte[] moves = new byte[moveCount];
+                in.readFully(moves);
+
+                int at = 0;
+                for (int game = 0; game < count; game++) {
+                    tally.add(results[game], lengths[game], moves[at]);
+                    at += lengths[game];
+                }
+                if (at != moveCount) {
+                    throw new IOException("Block lengths do not add up to its moves");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns value following given option (e.g. '--games 1000') or default if option not passed
+     */
+    private static int option(List<String> options, String name, int defaultValue) {
+        String value = option(options, name, (String) null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String option(List<String> options, String name, String defaultValue) {
+        int at = options.indexOf(name);
+        return at == -1 || at + 1 >= options.size() ? defaultValue : options.get(at + 1);
+    }
+}
@@ -0,0 +1,305 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SocketConnection Class: Classic blocking connection... one thread per client reading in its name, then its commands
+ * The thread is the client's from the moment it connects, so a client slow to send its name only ever holds up its own
+ * Commands may arrive as TEXT lines or BINARY frames (see 'Protocol')
+ * Commands turned away are rate limited ('RateLimiter')... a client flooding them is disconnected
+ */
+class SocketConnection implements Connection, Runnable {
+
+    private static final int MAX_LINE_LENGTH = 256;  // longest TEXT command accepted from a client
+    private static final int MAX_PENDING_BYTES = 64 * 1024;  // outbound bytes queued for a client before it is dropped (3 snapshots of the biggest board)
+
+    /**
+     * Threads writing to sockets... shared by all connections, so a client that is slow to read holds up a writer thread
+     * rather than the player whose move is being sent to it
+     */
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "socket-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Threads reading from sockets... one per connected client, from its handshake until it leaves (cached, so threads of
+     * clients that have left are reused rather than one started per connection)
+     */
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "socket-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Socket socket;
+    private final Matchmaker matchmaker;  // player passed on once named
+    private final long acceptedAt;
+    private final InputStream input;
+    private final OutputStream output;
+    private final byte[] line = new byte[MAX_LINE_LENGTH];  // TEXT command currently being read in
+    private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();  // messages waiting for next flush
+    private final AtomicInteger pendingBytes = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();  // true while a drain is waiting to run
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private Protocol.Codec codec = Protocol.TEXT;  // format messages are sent in (guarded by 'this')
+    private volatile Game.Player player;  // set by 'open()'... read by 'close()' on whichever thread notices the drop
+    private final RateLimiter rejections = new RateLimiter();  // reading thread only
+    private volatile boolean forfeited;  // disconnected for misbehaving... game not held for it
+    private volatile boolean named;  // true once handshake (player name) has been read in
+
+    /**
+     * Reading in name and commands from client and transmitting messages to client over given socket (accepted at
+     * 'acceptedAt')... name passed to 'matchmaker' once read in
+     */
+    SocketConnection(Socket socket, Matchmaker matchmaker, long acceptedAt) throws IOException {
+        this.socket = socket;
+        this.matchmaker = matchmaker;
+        this.acceptedAt = acceptedAt;
+        socket.setTcpNoDelay(true);  // each flush is a whole move... send it now rather than waiting on client's ACK
+        input = new BufferedInputStream(socket.getInputStream());  // read messages from client
+        output = new BufferedOutputStream(socket.getOutputStream());  // transmit messages to client
+    }
+
+    @Override
+    public synchronized void send(int type, int square) {
+        enqueue(codec.encode(type, square));
+    }
+
+    @Override
+    public synchronized void send(int type, String text) {
+        enqueue(codec.encode(type, text));
+    }
+
+    @Override
+    public synchronized void send(Protocol.Frame frame) {
+        enqueue(frame.encoded(codec));
+    }
+
+    /**
+     * Queueing message until next 'flush()' (encoded arrays are shared, so queued as they are)
+     */
+    private void enqueue(byte[] message) {
+        // client not reading its messages... drop it rather than buffering without limit
+        if (pendingBytes.addAndGet(message.length) > MAX_PENDING_BYTES) {
+            Metrics.SLOW_CLIENTS_DROPPED.increment();
+            close();
+            return;
+        }
+        outbound.add(message);
+    }
+
+    /**
+     * Handing queued messages to a writer thread... caller never waits on this client's socket
+     */
+    @Override
+    public void flush() {
+        if (!outbound.isEmpty() && scheduled.compareAndSet(false, true)) {
+            WRITERS.execute(this::drain);
+        }
+    }
+
+    /**
+     * Writing out everything queued in one write (runs on a writer thread)
+     * Failures show up as a failed read on client's own thread
+     */
+    private void drain() {
+        scheduled.set(false);  // cleared first so messages flushed from now on schedule another drain
+
+        synchronized (output) {
+            long start = System.nanoTime();
+            int written = 0;
+            try {
+                byte[] message;
+                while ((message = outbound.poll()) != null) {
+                    output.write(message);
+                    pendingBytes.addAndGet(-message.length);
+                    written += message.length;
+                }
+                output.flush();
+            } catch (IOException e) {
+                close();
+            }
+            Metrics.SOCKET_WRITE.recordSince(start);
+            Metrics.SOCKET_WRITES.increment();
+            Metrics.BYTES_WRITTEN.add(written);
+        }
+    }
+
+    /**
+     * Acknowledging switch to BINARY (acknowledgement itself is the last TEXT message client receives)
+     */
+    private synchronized void switchToBinary() {
+        enqueue(Protocol.BINARY_ACKNOWLEDGEMENT);
+        flush();
+        codec = Protocol.BINARY;
+    }
+
+    /**
+     * Starting client's reading thread straight after it connects ('run()')... accept loop never waits on a client
+     */
+    void start() {
+        READERS.execute(this);
+    }
+
+    /**
+     * Passing moves read in from now on to given player (reading thread has been running since the handshake)
+     */
+    @Override
+    public void open(Game.Player player) {
+        this.player = player;
+        if (closed.get() && player != null) {
+            player.disconnected(this, false);  // left before game started
+        }
+    }
+
+    @Override
+    public int pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        Metrics.CONNECTED.decrement();
+        if (!named) {
+            Metrics.HANDSHAKE_FAILURES.increment();  // gone (or timed out) before sending a name
+        }
+        try {
+            socket.close();  // close current socket if possible
+        }
+        catch (IOException e) {
+            Log.info("Close Failed!", e);
+        }
+
+        Game.Player current = player;
+        if (current != null) {
+            current.disconnected(this, forfeited);  // game parked or abandoned... opponent no longer left waiting
+        }
+    }
+
+    /**
+     * Executing run method of this thread -> reads name, then commands until client disconnects (or is disconnected)
+     * Commands read in before the game starts (no player yet) are turned away like any other
+     */
+    @Override
+    public void run() {
+        try {
+            handshake();
+            int first;
+
+            while ((first = input.read()) != -1) {
+                int command;
+
+                // BINARY frame -> opcode + board index
+                if (Protocol.isBinary(first)) {
+                    int square = input.read();
+                    if (square != -1 && Protocol.squareBytes(square) == 2) {
+                        int low = input.read();
+                        square = low == -1 ? -1 : Protocol.square(square, low);
+                    }
+                    if (square == -1) {
+                        break;
+                    }
+                    command = first == Protocol.MOVE ? square : Protocol.NOT_A_MOVE;
+                }
+                // TEXT line -> read up to line ending
+                else {
+                    int length = readLine(first);
+                    if (length == -1) {
+                        disconnect(Protocol.COMMAND_TOO_LONG);
+                        break;
+                    }
+                    command = Protocol.parseCommand(line, 0, length);
+                }
+
+                Game.Player current = player;
+                if (command == Protocol.BINARY_REQUESTED) {
+                    switchToBinary();
+                } else if (command == Protocol.NOT_A_MOVE || current == null || !current.handleMove(command)) {
+                    if (!rejections.tryAcquire()) {
+                        disconnect(Protocol.TOO_MANY_REJECTED);
+                        break;
+                    }
+                    if (command != Protocol.NOT_A_MOVE && current != null) {
+                        send(Protocol.MESSAGE, "Not Possible Move!");
+                        flush();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.info("Player Disconnected!", e);  // if fail to retrieve/transmit messages... client then disconnected
+        }
+        // statement gets executed after try-catch conditions
+        finally {
+            close();
+        }
+    }
+
+    /**
+     * Reading in player's name and passing them to matchmaker
+     * Client that does not send its name in time is disconnected (read times out)
+     */
+    private void handshake() throws IOException {
+        socket.setSoTimeout(Server.HANDSHAKE_TIMEOUT_MILLIS);
+        String name = new DataInputStream(input).readUTF();  // anything sent after the name stays buffered for 'run()'
+        socket.setSoTimeout(0);  // no timeout once playing... players can take as long as they like over a move
+
+        named = true;
+        Metrics.HANDSHAKES.increment();
+        Metrics.HANDSHAKE.recordSince(acceptedAt);
+        matchmaker.enqueue(this, name);
+    }
+
+    /**
+     * Disconnecting misbehaving client... told why first ('GOODBYE', written straight away) and its game forfeited
+     */
+    private void disconnect(int reason) {
+        Metrics.CLIENTS_DISCONNECTED.increment();
+        Log.info("Client Disconnected!", Protocol.goodbye(reason));
+        forfeited = true;
+        send(Protocol.GOODBYE, Protocol.goodbye(reason));
+        drain();
+        try {
+            socket.shutdownOutput();  // 'GOODBYE' goes out ahead of the close
+        } catch (IOException ignored) {
+            // already gone
+        }
+        close();
+    }
+
+    /**
+     * Reading rest of TEXT line into 'line' and returning its length (line ending dropped)... -1 if longer than any command
+     */
+    private int readLine(int first) throws IOException {
+        int length = 0;
+        int next = first;
+
+        while (next != '\n') {
+            if (next == -1) {
+                throw new EOFException("Client disconnected mid-command");
+            }
+            if (length == line.length) {
+                return -1;
+            }
+            line[length++] = (byte) next;
+            next = input.read();
+        }
+        return length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+    }
+}
@@ -0,0 +1,228 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spectators Class: Connections watching one game (handshake name 'SPECTATE <game id>')
+ *
+ * Each move is encoded once into a shared 'Protocol.Frame' and the same array is queued on every spectator's connection.
+ * Sending happens on a fan-out thread (not the mover's) so players never wait on spectators however many there are
+ *  -> spectator falls behind (too much still queued... a couple of snapshots' worth for the board) -> moves are
+ *     skipped ('conflated') and a fresh board snapshot sent once it has caught up, instead of queueing every move
+ *  -> stays behind for too long -> dropped
+ *
+ * Spectators see BLUE's discs as 'VALID_MOVE' and RED's as 'OPPONENT_MOVED', so the normal client draws the board unchanged
+ */
+final class Spectators implements Runnable {
+
+    private static final int CONFLATE_BYTES = 2 * 1024;  // least queued bytes at which a spectator stops being sent every move
+    private static final int CONFLATE_SNAPSHOTS = 2;  // ... or this many full-board snapshots, if more (bigger boards)
+    private static final int SNAPSHOT_MESSAGE_BYTES = 256;  // title and status lines in a snapshot (names included)
+    private static final int DROP_AFTER_MOVES = 20;  // moves in a row a spectator can spend behind before it is dropped
+
+    /**
+     * Threads sending frames to spectators... shared by all games
+     */
+    private static final ExecutorService FANOUT = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "spectator-fanout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Watcher Class: One spectator and how far behind it is (fan-out thread only)
+     */
+    private static final class Watcher {
+        final Connection connection;
+        int seen;  // discs on board as of last frame sent
+        int behind;  // moves skipped in a row because spectator was backlogged
+
+        Watcher(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final Game game;
+    private final String title;  // e.g. 'Alice (BLUE) vs Bob (RED)'
+    private final int conflateBytes;  // queued bytes at which a spectator of this game stops being sent every move
+
+    /**
+     * Moves ('GameState') and new spectators ('Connection') waiting for the fan-out thread, in the order they happened
+     */
+    private final Queue<Object> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final List<Watcher> watchers = new ArrayList<>();  // fan-out thread only
+    private volatile int count;
+
+    private Protocol.Frame snapshot;  // last snapshot built (late joiners at same point in game share it)
+    private int snapshotDiscs = -1;
+    private int snapshotStatus;
+
+    Spectators(Game game) {
+        this.game = game;
+        this.title = game.firstPlayer + " vs " + game.firstPlayer.opponent;
+        this.conflateBytes = Math.max(CONFLATE_BYTES, CONFLATE_SNAPSHOTS * snapshotBytes(game.state().board));
+    }
+
+    /**
+     * Returns most bytes a snapshot of given board can take (every square filled, in TEXT... the larger format)
+     * e.g. 1.2KB on 6x9, 7.7KB on 20x20, 20KB on 32x32
+     */
+    static int snapshotBytes(Board board) {
+        return board.squares * Protocol.TEXT.encode(Protocol.OPPONENT_MOVED, board.squares - 1).length + SNAPSHOT_MESSAGE_BYTES;
+    }
+
+    /**
+     * Adding spectator... it is sent a snapshot of the board then every move after it
+     */
+    void join(Connection connection) {
+        connection.open(null);  // read in commands (e.g. switch to BINARY)... moves from spectators ignored
+        events.add(connection);
+        schedule();
+    }
+
+    /**
+     * Passing a published move on to every spectator (called by 'Game' after players have been sent it)
+     */
+    void moved(GameState next) {
+        events.add(next);
+        schedule();
+    }
+
+    /**
+     * Returns number of spectators watching
+     */
+    int count() {
+        return count;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            FANOUT.execute(this);
+        }
+    }
+
+    /**
+     * Executing run method of fan-out thread -> handles every event queued so far in order
+     */
+    @Override
+    public void run() {
+        scheduled.set(false);  // cleared first so events added from now on schedule another run
+
+        Object event;
+        while ((event = events.poll()) != null) {
+            if (event instanceof Connection) {
+                Watcher watcher = new Watcher((Connection) event);
+                GameState state = game.state();
+                watcher.seen = state.discCount;
+                watcher.connection.send(snapshot(state));
+                watcher.connection.flush();
+                watchers.add(watcher);
+            } else {
+                fanOut((GameState) event);
+            }
+        }
+        count = watchers.size();
+    }
+
+    /**
+     * Sending one move to every spectator... same frame (same array) to all of them
+     */
+    private void fanOut(GameState next) {
+        Protocol.Frame frame = moveFrame(next);
+
+        for (Iterator<Watcher> iterator = watchers.iterator(); iterator.hasNext(); ) {
+            Watcher watcher = iterator.next();
+            Connection connection = watcher.connection;
+
+            if (!connection.isOpen()) {
+                iterator.remove();
+                continue;
+            }
+            if (watcher.seen >= next.discCount && next.status != GameState.ABANDONED) {
+                continue;  // joined after this move... already in its snapshot
+            }
+
+            if (connection.pendingBytes() > conflateBytes && !next.isOver()) {
+                if (++watcher.behind > DROP_AFTER_MOVES) {
+                    connection.close();  // not reading at all... drop rather than hold anything for it
+                    iterator.remove();
+                }
+                continue;
+            }
+
+            // caught up again after skipping moves -> whole board in one go instead of the moves missed
+            connection.send(watcher.behind > 0 ? snapshot(next) : frame);
+            watcher.behind = 0;
+            watcher.seen = next.discCount;
+            connection.flush();
+        }
+
+        if (next.isOver()) {
+            watchers.clear();  // nothing more to send... clients leave once they read the result
+        }
+    }
+
+    /**
+     * Frame for one move -> disc placed, then whose turn it is (or the result)... no disc if game was abandoned
+     */
+    private Protocol.Frame moveFrame(GameState next) {
+        Protocol.Frame.Builder frame = new Protocol.Frame.Builder();
+        if (next.status == GameState.ABANDONED) {
+            return status(frame, next).build();
+        }
+        frame.add(next.turn == 1 ? Protocol.VALID_MOVE : Protocol.OPPONENT_MOVED, next.lastSquare);  // seat 0 (BLUE) just moved
+        return status(frame, next).build();
+    }
+
+    /**
+     * Frame for whole board -> board shape (if not standard), title, every disc, then whose turn it is (or the result)
+     */
+    private Protocol.Frame snapshot(GameState state) {
+        if (snapshotDiscs == state.discCount && snapshotStatus == state.status) {
+            return snapshot;
+        }
+
+        Protocol.Frame.Builder frame = new Protocol.Frame.Builder();
+        if (state.board != Board.STANDARD) {
+            frame.add(state.board);  // client draws standard board unless told otherwise
+        }
+        frame.add(Protocol.MESSAGE, "Spectating Game " + game.id + ": " + title);
+        for (int square = 0; square < state.board.squares; square++) {
+            int owner = state.owner(square);
+            if (owner != -1) {
+                frame.add(owner == 0 ? Protocol.VALID_MOVE : Protocol.OPPONENT_MOVED, square);
+            }
+        }
+
+        snapshot = status(frame, state).build();
+        snapshotDiscs = state.discCount;
+        snapshotStatus = state.status;
+        return snapshot;
+    }
+
+    private Protocol.Frame.Builder status(Protocol.Frame.Builder frame, GameState state) {
+        Game.Player blue = game.firstPlayer;
+
+        if (state.status == GameState.WON) {
+            boolean blueWon = state.turn == 1;
+            frame.add(Protocol.MESSAGE, (blueWon ? blue : blue.opponent) + " Wins!");
+            frame.add(blueWon ? Protocol.VICTORY : Protocol.DEFEAT, state.lastSquare);
+        } else if (state.status == GameState.ABANDONED) {
+            frame.add(Protocol.MESSAGE, "Game Abandoned!");
+        } else if (state.isFull()) {
+            frame.add(Protocol.MESSAGE, "Draw!");
+            frame.add(Protocol.TIE, state.lastSquare);
+        } else {
+            frame.add(Protocol.MESSAGE, (state.turn == 0 ? blue : blue.opponent) + "'s Turn!");
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,135 @@
+package me.jordanodonnell.connectfive.server;
+
+/**
+ * TimerWheel Class: Hashed timer wheel... one thread runs every timeout for the whole server
+ *
+ * Time is cut into ticks and the wheel has a slot per tick, each holding a linked list of timeouts due in it
+ *  -> scheduling and cancelling are O(1) (link/unlink under one short lock), however many games are waiting
+ *  -> a timeout further away than one turn of the wheel waits in its slot for the turns left ('rounds')
+ *  -> each tick only the timeouts in that slot are looked at
+ * Tasks run on the wheel's thread so they must be quick (queue a message, close a connection... never block)
+ */
+final class TimerWheel {
+
+    /**
+     * Timeout Class: One scheduled task... 'cancel()' unlinks it so a finished game is not held on to until it is due
+     */
+    static final class Timeout {
+        private final Runnable task;
+        private long rounds;  // turns of the wheel left before due
+        private int slot = -1;  // -1 -> run or cancelled
+        private Timeout previous;
+        private Timeout next;
+        private final TimerWheel wheel;
+
+        private Timeout(TimerWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        /**
+         * Returns true if timeout was still waiting (it will now never run)
+         */
+        boolean cancel() {
+            synchronized (wheel) {
+                if (slot == -1) {
+                    return false;
+                }
+                wheel.unlink(this);
+                return true;
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final Timeout[] slots;  // head of each slot's list
+    private long tick;  // ticks run so far (guarded by 'this')
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * Creating wheel with given tick length and number of slots, started on a daemon thread with given name
+     */
+    TimerWheel(String name, long tickMillis, int slotCount) {
+        this.tickNanos = tickMillis * 1_000_000;
+        this.slots = new Timeout[slotCount];
+
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Running given task on the wheel's thread once given delay has passed (rounded up to the next tick)
+     * Safe to call from any thread, including from a task
+     */
+    Timeout schedule(long delayMillis, Runnable task) {
+        Timeout timeout = new Timeout(this, task);
+        long delayTicks = Math.max(1, (delayMillis * 1_000_000 + tickNanos - 1) / tickNanos);
+
+        synchronized (this) {
+            long due = tick + delayTicks;
+            timeout.rounds = delayTicks / slots.length;  // times its slot comes round before 'due' (next tick run is 'tick')
+            timeout.slot = (int) (due % slots.length);
+            timeout.next = slots[timeout.slot];
+            if (timeout.next != null) {
+                timeout.next.previous = timeout;
+            }
+            slots[timeout.slot] = timeout;
+        }
+        return timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous == null) {
+            slots[timeout.slot] = timeout.next;
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+    /**
+     * Executing run method of wheel's thread -> each tick, takes the timeouts due out of their slot then runs them
+     * (outside the lock, so tasks can schedule more)
+     */
+    private void run() {
+        while (true) {
+            Timeout due = null;
+            synchronized (this) {
+                Timeout timeout = slots[(int) (tick % slots.length)];
+                while (timeout != null) {
+                    Timeout following = timeout.next;
+                    if (timeout.rounds-- == 0) {
+                        unlink(timeout);
+                        timeout.next = due;  // reuse link for list of due timeouts
+                        due = timeout;
+                    }
+                    timeout = following;
+                }
+                tick++;
+            }
+
+            for (; due != null; due = due.next) {
+                try {
+                    due.task.run();
+                } catch (RuntimeException e) {
+                    Log.info("Timer Task Failed!", e);
+                }
+            }
+
+            long sleepNanos = startedAt + tick * tickNanos - System.nanoTime();  // next tick... no drift if a tick ran late
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BitboardTest Class: Board index to bit layout (and back), stacking discs in a column and five in a row found in every
+ * direction without lines wrapping round from one column into the next
+ */
+class BitboardTest {
+
+    @Test
+    void indexAndBitRoundTrip() {
+        long seen = 0;
+        for (int index = 0; index < Bitboard.SQUARES; index++) {
+            int bit = Bitboard.toBit(index);
+            assertEquals(index, Bitboard.toIndex(bit));
+            assertTrue(bit % 7 != 6, "sentinel bit used by " + index);
+            seen |= 1L << bit;
+        }
+        assertEquals(Bitboard.SQUARES, Long.bitCount(seen));
+        assertEquals(0, Bitboard.toBit(Bitboard.SQUARES - Bitboard.COLUMNS));  // bottom left
+        assertEquals(5, Bitboard.toBit(0));  // top left
+        assertEquals(61, Bitboard.toBit(Bitboard.COLUMNS - 1));  // top right
+    }
+
+    @Test
+    void discsStackUpColumn() {
+        long occupied = 0;
+        for (int row = 0; row < Bitboard.ROWS; row++) {
+            int bit = Bitboard.lowestFreeBit(occupied, 3);
+            assertEquals(3 * 7 + row, bit);
+            occupied |= 1L << bit;
+        }
+        assertEquals(-1, Bitboard.lowestFreeBit(occupied, 3));  // full
+        assertEquals(4 * 7, Bitboard.lowestFreeBit(occupied, 4));  // neighbour untouched
+    }
+
+    @Test
+    void fiveInARowInEveryDirection() {
+        assertTrue(Bitboard.isWin(line(5, 0, -1, 0)));  // vertical, bottom up
+        assertTrue(Bitboard.isWin(line(5, 4, 0, 1)));  // horizontal
+        assertTrue(Bitboard.isWin(line(5, 0, -1, 1)));  // bottom-left to top-right
+        assertTrue(Bitboard.isWin(line(5, 8, -1, -1)));  // bottom-right to top-left
+        assertTrue(Bitboard.isWin(line(0, 0, 0, 1)));  // top row
+    }
+
+    @Test
+    void fourInARowIsNotAWin() {
+        long discs = 0;
+        for (int column = 0; column < 4; column++) {
+            discs |= 1L << Bitboard.toBit(5 * Bitboard.COLUMNS + column);
+        }
+        assertFalse(Bitboard.isWin(discs));
+    }
+
+    @Test
+    void linesNeverWrapIntoNextColumn() {
+        long discs = 0;
+        for (int row = 0; row < 2; row++) {
+            discs |= 1L << Bitboard.toBit(row * Bitboard.COLUMNS);  // top of column 0
+        }
+        for (int row = 3; row < 6; row++) {
+            discs |= 1L << Bitboard.toBit(row * Bitboard.COLUMNS + 1);  // bottom of column 1
+        }
+        assertFalse(Bitboard.isWin(discs));
+
+        discs = 0;
+        for (int column = 6; column < 9; column++) {
+            discs |= 1L << Bitboard.toBit(4 * Bitboard.COLUMNS + column);  // end of one row
+        }
+        for (int column = 0; column < 2; column++) {
+            discs |= 1L << Bitboard.toBit(5 * Bitboard.COLUMNS + column);  // start of the row below
+        }
+        assertFalse(Bitboard.isWin(discs));
+    }
+
+    /**
+     * Returns five discs in a row from given row and column in given direction
+     */
+    private static long line(int row, int column, int rowStep, int columnStep) {
+        long discs = 0;
+        for (int step = 0; step < Bitboard.WIN_LENGTH; step++) {
+            discs |= 1L << Bitboard.toBit((row + rowStep * step) * Bitboard.COLUMNS + column + columnStep * step);
+        }
+        return discs;
+    }
+}
@@ -0,0 +1,173 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BoardTest Class: Win detection on every axis for the three ways 'Board' checks it...
+ * standard 6x9 ('Bitboard'), other one 'long' boards (7x7) and boards over several 'long's (20x20, 32x32)
+ */
+class BoardTest {
+
+    private static final Board SMALL = Board.of(7, 7, 4);
+    private static final Board LARGE = Board.of(20, 20, 5);
+    private static final Board LARGEST = Board.of(32, 32, 10);
+
+    @Test
+    void boardsUnderTestCoverEveryLayout() {
+        assertEquals(1, Board.STANDARD.words);
+        assertEquals(1, SMALL.words);
+        assertTrue(LARGE.words > 1);
+        assertTrue(LARGEST.words > 1);
+        assertNull(Board.of(3, 9, 3));
+        assertNull(Board.of(6, 9, 11));
+        assertNull(Board.of(4, 4, 5));
+    }
+
+    @Test
+    void verticalLines() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE, LARGEST}) {
+            for (int column = 0; column < board.columns; column++) {
+                assertLine(board, board.rows - 1, column, -1, 0);  // bottom up
+                assertLine(board, board.winLength - 1, column, -1, 0);  // up to top row
+            }
+        }
+    }
+
+    @Test
+    void horizontalLines() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE, LARGEST}) {
+            for (int column = 0; column + board.winLength <= board.columns; column++) {
+                assertLine(board, board.rows - 1, column, 0, 1);  // bottom row
+                assertLine(board, 0, column, 0, 1);  // top row
+            }
+        }
+    }
+
+    @Test
+    void diagonalLines() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE, LARGEST}) {
+            for (int row = board.winLength - 1; row < board.rows; row++) {
+                for (int column = 0; column + board.winLength <= board.columns; column++) {
+                    assertLine(board, row, column, -1, 1);  // bottom-left to top-right
+                    assertLine(board, row, board.columns - 1 - column, -1, -1);  // bottom-right to top-left
+                }
+            }
+        }
+    }
+
+    @Test
+    void lineOneShortIsNotAWin() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE, LARGEST}) {
+            int bottom = board.rows - 1;
+            int[][] directions = {{-1, 0}, {0, 1}, {-1, 1}};
+            for (int[] direction : directions) {
+                long[] discs = new long[board.words];
+                int square = -1;
+                for (int step = 0; step < board.winLength - 1; step++) {
+                    square = square(board, bottom + direction[0] * step, direction[1] * step);
+                    discs = board.withDisc(discs, square);
+                }
+                assertFalse(board.isWin(discs, square), board + " " + direction[0] + "," + direction[1]);
+            }
+        }
+    }
+
+    @Test
+    void verticalLineNeverRunsIntoNextColumn() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE}) {
+            long[] discs = new long[board.words];
+            int half = board.winLength / 2;
+            for (int row = 0; row < half; row++) {
+                discs = board.withDisc(discs, square(board, row, 0));  // top of column 0
+            }
+            int square = -1;
+            for (int row = board.rows - 1; row >= board.rows - (board.winLength - half); row--) {
+                square = square(board, row, 1);  // bottom of column 1
+                discs = board.withDisc(discs, square);
+            }
+            assertFalse(board.isWin(discs, square), board.toString());
+        }
+    }
+
+    @Test
+    void horizontalLineNeverRunsIntoNextRow() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE}) {
+            long[] discs = new long[board.words];
+            int half = board.winLength / 2;
+            int square = -1;
+            for (int step = 0; step < board.winLength; step++) {
+                square = step < half
+                        ? square(board, board.rows - 2, board.columns - half + step)  // end of one row
+                        : square(board, board.rows - 1, step - half);  // start of the row below
+                discs = board.withDisc(discs, square);
+            }
+            assertFalse(board.isWin(discs, square), board.toString());
+        }
+    }
+
+    @Test
+    void playedGameIsWonByVerticalLine() {
+        for (Board board : new Board[]{Board.STANDARD, SMALL, LARGE}) {
+            GameState state = GameState.start(board);
+            for (int move = 0; move < board.winLength - 1; move++) {
+                state = state.play(0);  // player 1 stacks column 0
+                state = state.play(1);  // player 2 stacks column 1
+                assertEquals(GameState.PLAYING, state.status);
+            }
+            state = state.play(0);
+            assertEquals(GameState.WON, state.status, board.toString());
+            assertEquals(1, state.turn);
+            assertEquals(0, state.owner(state.lastSquare));
+            assertNull(state.play(2));  // game over
+        }
+    }
+
+    @Test
+    void playedGameCanBeTied() {
+        GameState state = GameState.start(Board.of(4, 4, 4));
+        for (int column : new int[]{2, 0, 1, 1, 0, 0, 1, 2, 3, 2, 0, 3, 3, 2, 3, 1}) {
+            assertEquals(GameState.PLAYING, state.status);
+            state = state.play(column);
+        }
+        assertEquals(GameState.TIED, state.status);
+        assertTrue(state.isFull());
+    }
+
+    @Test
+    void discDropsToLowestFreeSquare() {
+        Board board = Board.STANDARD;
+        GameState state = GameState.start(board).play(4);  // top square clicked
+        assertNotNull(state);
+        assertEquals(square(board, board.rows - 1, 4), state.lastSquare);
+        assertNull(state.play(state.lastSquare));  // square taken
+        assertNull(state.play(-1));
+        assertNull(state.play(board.squares));
+    }
+
+    /**
+     * Placing a line of 'winLength' discs from given row and column in given direction, checking it is a win
+     * only once the last disc goes down (checked from both ends)
+     */
+    private static void assertLine(Board board, int row, int column, int rowStep, int columnStep) {
+        long[] discs = new long[board.words];
+        int first = square(board, row, column);
+        int last = first;
+        for (int step = 0; step < board.winLength; step++) {
+            assertFalse(step > 0 && board.isWin(discs, last), board + " early at " + last);
+            last = square(board, row + rowStep * step, column + columnStep * step);
+            discs = board.withDisc(discs, last);
+        }
+        assertTrue(board.isWin(discs, last), board + " from " + first + " to " + last);
+        assertTrue(board.isWin(discs, first), board + " from " + last + " to " + first);
+    }
+
+    private static int square(Board board, int row, int column) {
+        return row * board.columns + column;
+    }
+}
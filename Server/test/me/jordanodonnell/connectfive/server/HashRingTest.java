@@ -0,0 +1,86 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HashRingTest Class: Game ids placed on nodes the same way every time, and membership changes only moving the games
+ * that have to move
+ */
+class HashRingTest {
+
+    private static final int GAMES = 20_000;
+    private static final long FIRST_ID = Game.GATEWAY_ID_BIT | 1_700_000_000_000L << 12;  // as 'Gateway' gives out (fixed clock)
+
+    @Test
+    void placementIsStable() {
+        HashRing<String> ring = ring("a:5001", "b:5002", "c:5003");
+        HashRing<String> rebuilt = ring("c:5003", "a:5001", "b:5002");  // same nodes, listed in another order
+        for (long id = FIRST_ID; id < FIRST_ID + GAMES; id++) {
+            assertEquals(ring.node(id), rebuilt.node(id));
+            assertEquals(ring.node(id), ring.node(id));
+        }
+    }
+
+    @Test
+    void addingNodeOnlyMovesGamesOntoIt() {
+        HashRing<String> before = ring("a:5001", "b:5002", "c:5003");
+        HashRing<String> after = ring("a:5001", "b:5002", "c:5003", "d:5004");
+        int moved = 0;
+        for (long id = FIRST_ID; id < FIRST_ID + GAMES; id++) {
+            if (!before.node(id).equals(after.node(id))) {
+                assertEquals("d:5004", after.node(id));
+                moved++;
+            }
+        }
+        assertTrue(moved > GAMES / 8 && moved < GAMES * 3 / 8, moved + " moved");  // about a quarter
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsGames() {
+        HashRing<String> before = ring("a:5001", "b:5002", "c:5003");
+        HashRing<String> after = ring("a:5001", "c:5003");
+        for (long id = FIRST_ID; id < FIRST_ID + GAMES; id++) {
+            if (!before.node(id).equals("b:5002")) {
+                assertEquals(before.node(id), after.node(id));
+            }
+        }
+    }
+
+    @Test
+    void gamesSpreadEvenly() {
+        String[] nodes = {"a:5001", "b:5002", "c:5003", "d:5004", "e:5005"};
+        HashRing<String> ring = ring(nodes);
+        Map<String, Integer> counts = new HashMap<>();
+        for (long id = FIRST_ID; id < FIRST_ID + GAMES; id++) {
+            counts.merge(ring.node(id), 1, Integer::sum);
+        }
+        int fair = GAMES / nodes.length;
+        for (String node : nodes) {
+            int count = counts.getOrDefault(node, 0);
+            assertTrue(count > fair * 2 / 3 && count < fair * 4 / 3, node + " has " + count);
+        }
+    }
+
+    @Test
+    void emptyRingHasNoNode() {
+        HashRing<String> ring = ring();
+        assertTrue(ring.isEmpty());
+        assertNull(ring.node(FIRST_ID));
+    }
+
+    private static HashRing<String> ring(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return new HashRing<>(nodes);
+    }
+}
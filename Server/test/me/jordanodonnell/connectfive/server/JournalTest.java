@@ -0,0 +1,110 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JournalTest Class: Games written to the journal and read back... unfinished games rebuilt move for move, finished and
+ * abandoned ones left out, and a restart ('reopen()') abandoning what the last run left behind
+ */
+class JournalTest {
+
+    private static final int SEGMENT_BYTES = 10 * Journal.RECORD_BYTES;  // small -> games span several segments
+    private static final long SYNC_MILLIS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unfinishedGamesRecovered() throws IOException {
+        Board large = Board.of(20, 20, 5);
+        GameState first;
+        GameState second;
+        try (Journal journal = new Journal(directory, SEGMENT_BYTES, SYNC_MILLIS)) {
+            first = play(journal, 1, Board.STANDARD, 4, 4, 3);
+            second = play(journal, 2, large, 19, 19, 0, 18, 19);  // indices past 255 (two byte squares)
+            play(journal, 3, Board.STANDARD, 0, 1, 0, 1, 0, 1, 0, 1, 0);  // won
+            play(journal, 4, Board.STANDARD, 2);
+            journal.gameAbandoned(4, 1);
+        }
+
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertTrue(segments.count() > 1);
+        }
+
+        Map<Long, GameState> recovered = Journal.recover(directory);
+        assertEquals(Set.of(1L, 2L), recovered.keySet());
+        assertSameGame(first, recovered.get(1L));
+        assertSameGame(second, recovered.get(2L));
+        assertSame(large, recovered.get(2L).board);
+        assertTrue(second.lastSquare > 255);
+    }
+
+    @Test
+    void recordsReplayedInOrder() throws IOException {
+        try (Journal journal = new Journal(directory, SEGMENT_BYTES, SYNC_MILLIS)) {
+            play(journal, 7, Board.of(8, 8, 4), 1, 2, 3);
+        }
+
+        StringBuilder records = new StringBuilder();
+        Journal.replay(directory, (type, gameId, seat, square, status) ->
+                records.append(type).append(' ').append(gameId).append(' ').append(seat).append(' ')
+                        .append(square).append(' ').append(status).append('\n'));
+        assertEquals("1 7 8 8 4\n"  // START -> rows, columns, win length
+                + "2 7 0 57 0\n"
+                + "2 7 1 58 0\n"
+                + "2 7 0 59 0\n", records.toString());
+    }
+
+    @Test
+    void reopenAbandonsUnfinishedGamesAndSeedsIds() throws IOException {
+        long highest = (System.currentTimeMillis() << 12) + (1L << 40);  // well past any id given out so far
+        long gatewayId = Game.GATEWAY_ID_BIT | highest + 1000;
+        try (Journal journal = new Journal(directory, SEGMENT_BYTES, SYNC_MILLIS)) {
+            play(journal, highest, Board.STANDARD, 4);
+            play(journal, gatewayId, Board.STANDARD, 5);
+        }
+
+        Journal.reopen(directory, SEGMENT_BYTES, SYNC_MILLIS).close();
+
+        assertTrue(Journal.recover(directory).isEmpty());
+        long next = new Game(Board.STANDARD, null).id;
+        assertTrue(next > highest, "id " + next + " not past " + highest);
+        assertEquals(0, next & Game.GATEWAY_ID_BIT);  // gateway's ids never seed the server's
+    }
+
+    /**
+     * Starting game with given id and playing given columns, recording each move as 'Game' does
+     */
+    private static GameState play(Journal journal, long gameId, Board board, int... columns) {
+        GameState state = GameState.start(board);
+        journal.gameStarted(gameId, board);
+        for (int column : columns) {
+            int seat = state.turn;
+            state = state.play(column);
+            journal.moved(gameId, seat, state.lastSquare, state.status);
+        }
+        return state;
+    }
+
+    private static void assertSameGame(GameState expected, GameState actual) {
+        assertArrayEquals(expected.firstDiscs, actual.firstDiscs);
+        assertArrayEquals(expected.secondDiscs, actual.secondDiscs);
+        assertEquals(expected.turn, actual.turn);
+        assertEquals(expected.discCount, actual.discCount);
+        assertEquals(expected.lastSquare, actual.lastSquare);
+        assertEquals(GameState.PLAYING, actual.status);
+    }
+}
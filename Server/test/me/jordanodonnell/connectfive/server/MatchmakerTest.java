@@ -0,0 +1,129 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MatchmakerTest Class: Players routed by a 'Gateway' ('MATCH <secret> <game id> <name>')... paired by id, refused
+ * without the secret, and turned away if the other player with their id never arrives. Spectators sent to the game
+ * they ask for, or the one started last
+ */
+class MatchmakerTest {
+
+    private static final String SECRET = "s3cret";
+    private static final long WAIT_MILLIS = 10_000;
+
+    private Matchmaker matchmaker;
+
+    @BeforeEach
+    void start() {
+        matchmaker = new Matchmaker(null, null, Board.STANDARD, new Sessions(1000, 60_000), SECRET);
+        matchmaker.start();
+    }
+
+    @Test
+    void gatewayPlayersPairedById() throws InterruptedException {
+        long gameId = Game.GATEWAY_ID_BIT | 42;
+        RecordingConnection first = new RecordingConnection();
+        RecordingConnection other = new RecordingConnection();
+        RecordingConnection second = new RecordingConnection();
+
+        matchmaker.enqueue(first, "MATCH " + SECRET + " " + gameId + " alice");
+        matchmaker.enqueue(other, "MATCH " + SECRET + " " + (gameId + 1) + " carol");  // different game... not her opponent
+        matchmaker.enqueue(second, "MATCH " + SECRET + " " + gameId + " bob");
+
+        assertTrue(first.await(Protocol.MESSAGE, "Your Turn!", WAIT_MILLIS));
+        assertTrue(second.await(Protocol.MESSAGE, "All Players Connected!", WAIT_MILLIS));
+        assertTrue(first.sent().contains(Protocol.WELCOME + " alice"));
+        assertNotNull(first.player);
+        assertEquals(gameId, first.player.game().id);
+        assertSame(first.player.game(), second.player.game());
+        assertFalse(other.sent().contains(Protocol.MESSAGE + " All Players Connected!"));
+        assertEquals(1, matchmaker.liveGames());
+    }
+
+    @Test
+    void matchWithoutSecretRefused() throws InterruptedException {
+        RecordingConnection wrong = new RecordingConnection();
+        RecordingConnection missing = new RecordingConnection();
+
+        matchmaker.enqueue(wrong, "MATCH guess 42 mallory");
+        matchmaker.enqueue(missing, "MATCH 42 mallory");
+
+        assertTrue(wrong.await(Protocol.MESSAGE, "Match Not Allowed!", WAIT_MILLIS));
+        assertTrue(missing.await(Protocol.MESSAGE, "Match Not Allowed!", WAIT_MILLIS));
+        assertFalse(wrong.isOpen());
+        assertFalse(missing.isOpen());
+        assertEquals(0, matchmaker.queueDepth());
+    }
+
+    @Test
+    void playerWhoseOpponentNeverArrivesTurnedAway() throws InterruptedException {
+        RecordingConnection lone = new RecordingConnection();
+        matchmaker.enqueue(lone, "MATCH " + SECRET + " " + (Game.GATEWAY_ID_BIT | 7) + " SESSION dave");
+        assertEquals(1, matchmaker.queueDepth());
+
+        assertTrue(lone.await(Protocol.GOODBYE, Protocol.goodbye(Protocol.NO_OPPONENT), WAIT_MILLIS));
+        assertTrue(lone.awaitClose(WAIT_MILLIS));  // once the client has had time to read why
+        assertEquals(0, matchmaker.queueDepth());
+        assertEquals(0, matchmaker.liveGames());
+    }
+
+    @Test
+    void bareSpectateWatchesGameStartedLast() throws InterruptedException {
+        Game older = startDirectGame("alice", "bob");
+        Game newer = startDirectGame("carol", "dave");
+
+        matchmaker.enqueue(new RecordingConnection(), Protocol.SPECTATE);
+        assertTrue(awaitSpectators(newer, 1));
+        assertEquals(0, older.spectatorCount());
+
+        matchmaker.enqueue(new RecordingConnection(), Protocol.SPECTATE + " " + older.id);
+        assertTrue(awaitSpectators(older, 1));
+        assertEquals(1, newer.spectatorCount());
+    }
+
+    @Test
+    void spectateWithoutGameTurnedAway() throws InterruptedException {
+        RecordingConnection bare = new RecordingConnection();
+        RecordingConnection unknown = new RecordingConnection();
+        RecordingConnection notNumber = new RecordingConnection();
+
+        matchmaker.enqueue(bare, Protocol.SPECTATE);
+        matchmaker.enqueue(unknown, Protocol.SPECTATE + " 12345");
+        matchmaker.enqueue(notNumber, Protocol.SPECTATE + " newest");
+
+        for (RecordingConnection spectator : new RecordingConnection[]{bare, unknown, notNumber}) {
+            assertTrue(spectator.await(Protocol.MESSAGE, "No Game to Spectate!", WAIT_MILLIS));
+        }
+    }
+
+    /**
+     * Queueing two players on the standard board and returning the game they are paired into
+     */
+    private Game startDirectGame(String first, String second) throws InterruptedException {
+        RecordingConnection player1 = new RecordingConnection();
+        RecordingConnection player2 = new RecordingConnection();
+        matchmaker.enqueue(player1, first);
+        matchmaker.enqueue(player2, second);
+        assertTrue(player1.await(Protocol.MESSAGE, "Your Turn!", WAIT_MILLIS));
+        return player1.player.game();
+    }
+
+    private static boolean awaitSpectators(Game game, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + WAIT_MILLIS * 1_000_000;
+        while (game.spectatorCount() != count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
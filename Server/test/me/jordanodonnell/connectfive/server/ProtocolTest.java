@@ -0,0 +1,120 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ProtocolTest Class: Both wire formats... BINARY board indices (one byte and two) and text frames read back the way a
+ * client reads them, TEXT commands parsed the way the server reads them
+ */
+class ProtocolTest {
+
+    @Test
+    void binarySquaresRoundTrip() {
+        for (int square = 0; square < Board.MAX_SIDE * Board.MAX_SIDE; square++) {
+            for (int type : new int[]{Protocol.VALID_MOVE, Protocol.OPPONENT_MOVED}) {
+                byte[] frame = Protocol.BINARY.encode(type, square);
+                assertEquals(type, frame[0]);
+                assertTrue(Protocol.isBinary(frame[0]));
+
+                int first = frame[1] & 0xFF;
+                int bytes = Protocol.squareBytes(first);
+                assertEquals(square < 0x80 ? 1 : 2, bytes, "square " + square);
+                assertEquals(1 + bytes, frame.length);
+                assertEquals(square, Protocol.square(first, bytes == 2 ? frame[2] & 0xFF : 0));
+            }
+        }
+    }
+
+    @Test
+    void binarySquareEdges() {
+        assertArrayEquals(new byte[]{Protocol.VALID_MOVE, 0x7F}, Protocol.BINARY.encode(Protocol.VALID_MOVE, 127));
+        assertArrayEquals(new byte[]{Protocol.VALID_MOVE, (byte) 0x80, (byte) 0x80},
+                Protocol.BINARY.encode(Protocol.VALID_MOVE, 128));
+        assertArrayEquals(new byte[]{Protocol.OPPONENT_MOVED, (byte) 0x83, (byte) 0xFF},
+                Protocol.BINARY.encode(Protocol.OPPONENT_MOVED, 1023));
+    }
+
+    @Test
+    void binaryResultsHaveNoIndex() {
+        assertArrayEquals(new byte[]{Protocol.VICTORY}, Protocol.BINARY.encode(Protocol.VICTORY, 0));
+        assertArrayEquals(new byte[]{Protocol.DEFEAT}, Protocol.BINARY.encode(Protocol.DEFEAT, 0));
+        assertArrayEquals(new byte[]{Protocol.TIE}, Protocol.BINARY.encode(Protocol.TIE, 0));
+    }
+
+    @Test
+    void binaryTextRoundTrip() {
+        String text = "Your Turn! \u00e9\u4e2d\ud83d\ude00";
+        byte[] frame = Protocol.BINARY.encode(Protocol.MESSAGE, text);
+        assertEquals(Protocol.MESSAGE, frame[0]);
+        assertEquals(frame.length - 2, frame[1] & 0xFF);
+        assertEquals(text, new String(frame, 2, frame.length - 2, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void binaryTextCutOnCharacterBoundary() {
+        String twoByte = "\u00e9".repeat(200);  // 400 bytes... 255 would split the 128th character
+        byte[] frame = Protocol.BINARY.encode(Protocol.WELCOME, twoByte);
+        assertEquals(254, frame[1] & 0xFF);
+        assertEquals("\u00e9".repeat(127), new String(frame, 2, frame.length - 2, StandardCharsets.UTF_8));
+
+        String fourByte = "a" + "\ud83d\ude00".repeat(100);  // 1 + 400 bytes... 255 falls inside the 64th emoji
+        frame = Protocol.BINARY.encode(Protocol.GOODBYE, fourByte);
+        assertEquals(253, frame[1] & 0xFF);
+        assertEquals("a" + "\ud83d\ude00".repeat(63), new String(frame, 2, frame.length - 2, StandardCharsets.UTF_8));
+
+        String ascii = "x".repeat(300);
+        frame = Protocol.BINARY.encode(Protocol.SESSION, ascii);
+        assertEquals(255, frame[1] & 0xFF);
+        assertEquals(257, frame.length);
+    }
+
+    @Test
+    void textMessages() {
+        assertEquals("VALID_MOVE40\n", text(Protocol.TEXT.encode(Protocol.VALID_MOVE, 40)));
+        assertEquals("OPPONENT_MOVED 399\n", text(Protocol.TEXT.encode(Protocol.OPPONENT_MOVED, 399)));
+        assertEquals("MESSAGE Your Turn!\n", text(Protocol.TEXT.encode(Protocol.MESSAGE, "Your Turn!")));
+        assertFalse(Protocol.isBinary('V'));
+        assertFalse(Protocol.isBinary('\n'));
+    }
+
+    @Test
+    void textCommandsParsed() {
+        assertEquals(40, parse("MOVE 40"));
+        assertEquals(0, parse("MOVE 0"));
+        assertEquals(1023, parse("MOVE 1023"));
+        assertEquals(-1, parse("MOVE "));
+        assertEquals(-1, parse("MOVE 4a"));
+        assertEquals(-1, parse("MOVE 12345"));
+        assertEquals(Protocol.BINARY_REQUESTED, parse("PROTOCOL BINARY"));
+        assertEquals(Protocol.NOT_A_MOVE, parse("PROTOCOL BINARY2"));
+        assertEquals(Protocol.NOT_A_MOVE, parse("HELLO"));
+        assertEquals(Protocol.NOT_A_MOVE, parse(""));
+
+        byte[] line = "xxMOVE 7yy".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(7, Protocol.parseCommand(line, 2, 8));  // only the bytes asked for are read
+    }
+
+    @Test
+    void goodbyeReasons() {
+        assertEquals("1 Too Many Rejected Commands!", Protocol.goodbye(Protocol.TOO_MANY_REJECTED));
+        assertEquals("2 Command Too Long!", Protocol.goodbye(Protocol.COMMAND_TOO_LONG));
+        assertEquals("3 Game Abandoned!", Protocol.goodbye(Protocol.GAME_ABANDONED));
+        assertEquals("4 Opponent Never Arrived!", Protocol.goodbye(Protocol.NO_OPPONENT));
+    }
+
+    private static int parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        return Protocol.parseCommand(bytes, 0, bytes.length);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RateLimiterTest Class: A full bucket lets 'burst' commands through, then one per interval as tokens come back,
+ * and a quiet client is back to a full bucket (never more)... clock stepped by hand
+ */
+class RateLimiterTest {
+
+    private static final int RATE = 10;  // one token back every 100ms
+    private static final int BURST = 5;
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @AfterEach
+    void restoreDefaults() {
+        RateLimiter.configure(RateLimiter.DEFAULT_RATE, RateLimiter.DEFAULT_BURST);
+    }
+
+    @Test
+    void burstThenRefusedUntilRefill() {
+        RateLimiter.configure(RATE, BURST);
+        RateLimiter limiter = new RateLimiter();
+        long now = System.nanoTime();
+
+        assertEquals(BURST, taken(limiter, now, 100));
+        assertFalse(limiter.tryAcquire(now + INTERVAL - 1));  // not quite back yet
+        assertTrue(limiter.tryAcquire(now + INTERVAL));
+        assertFalse(limiter.tryAcquire(now + INTERVAL));
+    }
+
+    @Test
+    void steadyRateKeepsUp() {
+        RateLimiter.configure(RATE, BURST);
+        RateLimiter limiter = new RateLimiter();
+        long now = System.nanoTime();
+
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < RATE; i++) {
+                assertTrue(limiter.tryAcquire(now));
+                now += INTERVAL;
+            }
+        }
+    }
+
+    @Test
+    void quietClientRefillsToBurstOnly() {
+        RateLimiter.configure(RATE, BURST);
+        RateLimiter limiter = new RateLimiter();
+        long now = System.nanoTime();
+
+        assertEquals(BURST, taken(limiter, now, 100));
+        now += 2 * INTERVAL;
+        assertEquals(2, taken(limiter, now, 100));  // two tokens back
+        now += TimeUnit.HOURS.toNanos(1);
+        assertEquals(BURST, taken(limiter, now, 100));  // full... not an hour's worth
+    }
+
+    @Test
+    void configureAppliesToEveryLimiter() {
+        RateLimiter.configure(1, 1);
+        RateLimiter limiter = new RateLimiter();
+        assertEquals(1, taken(limiter, System.nanoTime(), 10));
+
+        RateLimiter.configure(RateLimiter.DEFAULT_RATE, RateLimiter.DEFAULT_BURST);
+        limiter = new RateLimiter();
+        assertEquals(RateLimiter.DEFAULT_BURST, taken(limiter, System.nanoTime(), 100));
+    }
+
+    /**
+     * Returns tokens taken out of given attempts all made at the same time
+     */
+    private static int taken(RateLimiter limiter, long now, int attempts) {
+        int taken = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (limiter.tryAcquire(now)) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,93 @@
+package me.jordanodonnell.connectfive.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RecordingConnection Class: Connection that keeps every message sent to it (e.g. 'MESSAGE Your Turn!', 'VALID_MOVE 40')
+ * Lets tests drive 'Matchmaker' and 'Game' without sockets and wait for what a client would have been sent
+ */
+class RecordingConnection implements Connection {
+
+    private final List<String> sent = new ArrayList<>();  // guarded by 'this'
+    private volatile boolean open = true;
+    volatile Game.Player player;
+
+    @Override
+    public synchronized void send(int type, int square) {
+        sent.add(type + " " + square);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void send(int type, String text) {
+        sent.add(type + " " + text);
+        notifyAll();
+    }
+
+    @Override
+    public void send(Protocol.Frame frame) {
+        send(Protocol.BOARD, "frame");
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void open(Game.Player player) {
+        this.player = player;
+    }
+
+    @Override
+    public int pendingBytes() {
+        return 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        notifyAll();
+    }
+
+    /**
+     * Returns true once given message type and text has been sent (false if it has not within given time)
+     */
+    synchronized boolean await(int type, String text, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        String expected = type + " " + text;
+        while (!sent.contains(expected)) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true once connection has been closed (false if it has not within given time)
+     */
+    synchronized boolean awaitClose(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (open) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    synchronized List<String> sent() {
+        return new ArrayList<>(sent);
+    }
+}
@@ -0,0 +1,98 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ServerTest Class: Blocking server mode over real sockets... clients that connect and never send a name must not keep
+ * anyone else from being welcomed
+ */
+class ServerTest {
+
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        Thread server = new Thread(() -> {
+            try {
+                Server.run(port, List.of());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, "test-server");
+        server.setDaemon(true);
+        server.start();
+
+        for (int attempt = 0; ; attempt++) {  // until it is listening
+            try (Socket probe = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @Test
+    void silentClientsDoNotLockOutOthers() throws IOException {
+        List<Socket> silent = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                silent.add(new Socket("localhost", port));  // connected, name never sent
+            }
+
+            try (Socket player = new Socket("localhost", port)) {
+                player.setSoTimeout(5000);
+                new DataOutputStream(player.getOutputStream()).writeUTF("alice");
+                BufferedReader lines = new BufferedReader(new InputStreamReader(player.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("WELCOME alice", lines.readLine());
+                assertEquals("MESSAGE Waiting for Opponent!", lines.readLine());
+            }
+        } finally {
+            for (Socket socket : silent) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void playersPairedOverSockets() throws IOException {
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            first.setSoTimeout(5000);
+            second.setSoTimeout(5000);
+            new DataOutputStream(first.getOutputStream()).writeUTF("bob");
+            BufferedReader firstLines = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("WELCOME bob", firstLines.readLine());
+            assertEquals("MESSAGE Waiting for Opponent!", firstLines.readLine());
+
+            new DataOutputStream(second.getOutputStream()).writeUTF("carol");
+            BufferedReader secondLines = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("WELCOME carol", secondLines.readLine());
+            assertEquals("MESSAGE Waiting for Opponent!", secondLines.readLine());
+            assertEquals("MESSAGE All Players Connected!", secondLines.readLine());
+
+            assertEquals("MESSAGE All Players Connected!", firstLines.readLine());
+            assertEquals("MESSAGE Your Turn!", firstLines.readLine());
+            first.getOutputStream().write("MOVE 49\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("VALID_MOVE49", firstLines.readLine());
+            assertEquals("OPPONENT_MOVED 49", secondLines.readLine());
+        }
+    }
+}
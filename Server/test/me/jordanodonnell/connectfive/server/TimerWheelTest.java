@@ -0,0 +1,82 @@
+package me.jordanodonnell.connectfive.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TimerWheelTest Class: Timeouts running in the order they fall due (including ones more than a turn of the wheel
+ * away), never early, and never once cancelled
+ */
+class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int SLOTS = 8;  // one turn = 80ms
+
+    @Test
+    void timeoutsRunInOrderDue() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel("test-wheel", TICK_MILLIS, SLOTS);
+        long[] delays = {170, 30, 260, 100, 60, 80};  // scheduled out of order, several turns away, one exactly a turn
+        List<Long> ran = Collections.synchronizedList(new ArrayList<>());
+        List<Long> early = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(delays.length);
+
+        long start = System.nanoTime();
+        for (long delay : delays) {
+            wheel.schedule(delay, () -> {
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < delay - TICK_MILLIS) {
+                    early.add(delay);  // a tick's slack... the wheel's ticks are not lined up with 'start'
+                }
+                ran.add(delay);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(30L, 60L, 80L, 100L, 170L, 260L), ran);
+        assertEquals(List.of(), early);
+    }
+
+    @Test
+    void cancelledTimeoutNeverRuns() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel("test-wheel", TICK_MILLIS, SLOTS);
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch laterRan = new CountDownLatch(1);
+
+        TimerWheel.Timeout cancelled = wheel.schedule(50, cancelledRan::countDown);
+        wheel.schedule(50, () -> { });  // same slot... unlinking one must leave the other
+        wheel.schedule(120, laterRan::countDown);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        assertTrue(laterRan.await(5, TimeUnit.SECONDS));
+        assertEquals(1, cancelledRan.getCount());
+    }
+
+    @Test
+    void timeoutRunCannotBeCancelled() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel("test-wheel", TICK_MILLIS, SLOTS);
+        CountDownLatch ran = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(10, ran::countDown);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void taskCanScheduleMore() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel("test-wheel", TICK_MILLIS, SLOTS);
+        CountDownLatch second = new CountDownLatch(1);
+        wheel.schedule(20, () -> wheel.schedule(20, second::countDown));
+
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+}